@@ -13,6 +13,16 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 public class Main {
+    // Usage: <source file> [--eager]. By default Next* and Affects are computed on demand as
+    // queries ask for them; --eager materializes them during extraction instead.
+    private static final String EAGER_OPTION = "--eager";
+
+    private static PKB newPkb(boolean eager) {
+        PKB pkb = new PKB();
+        pkb.setLazyNextStar(!eager);
+        pkb.setLazyAffects(!eager);
+        return pkb;
+    }
 
     public static void defaultRun(String[] args) {
         if (args.length < 1) {
@@ -26,7 +36,7 @@ public class Main {
             Parser par = new Parser(lex.convertToTokens());
             TNode ast = par.parseProgram();
 
-            PKB pkb = new PKB();
+            PKB pkb = newPkb(Arrays.asList(args).contains(EAGER_OPTION));
             new DesignExtractor(pkb).extract(ast);
 
             QueryEvaluator evaluator = new QueryEvaluator(pkb);
@@ -68,7 +78,7 @@ public class Main {
             Parser par = new Parser(lex.convertToTokens());
             TNode ast = par.parseProgram();
 
-            PKB pkb = new PKB();
+            PKB pkb = newPkb(false);
             new DesignExtractor(pkb).extract(ast);
 
             QueryEvaluator evaluator = new QueryEvaluator(pkb);
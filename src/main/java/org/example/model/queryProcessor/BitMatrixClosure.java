@@ -0,0 +1,107 @@
+package org.example.model.queryProcessor;
+
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+// Transitive closure for intra-procedural relations (Next*, Affects*). Every procedure is a
+// contiguous statement range, so it gets its own long[] bit-matrix whose columns start at the
+// word holding its first statement. Strongly connected components are collapsed first; their
+// shared rows are then filled level by level (sinks first), each level in parallel on the
+// common fork/join pool, and procedures themselves are closed in parallel.
+final class BitMatrixClosure {
+    private static final int PARALLEL_LEVEL_SIZE = 64;
+
+    private BitMatrixClosure() {
+    }
+
+    static TransitiveClosure compute(int size, List<int[]> ranges, IntFunction<BitSet> successors) {
+        BitSet[] reversed = new BitSet[size];
+        for (int from = 0; from < size; from++) {
+            BitSet next = successors.apply(from);
+            if (next == null) continue;
+            for (int to = next.nextSetBit(0); to >= 0; to = next.nextSetBit(to + 1)) {
+                if (reversed[to] == null) reversed[to] = new BitSet();
+                reversed[to].set(from);
+            }
+        }
+        long[][] forward = new long[size][];
+        int[] forwardBase = new int[size];
+        long[][] backward = new long[size][];
+        int[] backwardBase = new int[size];
+        ranges.parallelStream().forEach(range -> {
+            closeRange(range[0], range[1], successors, forward, forwardBase);
+            closeRange(range[0], range[1], s -> reversed[s], backward, backwardBase);
+        });
+        return TransitiveClosure.fromPackedRows(forward, forwardBase, backward, backwardBase);
+    }
+
+    private static void closeRange(int first, int last, IntFunction<BitSet> successors, long[][] rows, int[] bases) {
+        int n = last - first + 1;
+        int origin = first & ~63;
+        int words = ((last - origin) >>> 6) + 1;
+        int[][] adj = new int[n][];
+        for (int i = 0; i < n; i++) {
+            BitSet next = successors.apply(first + i);
+            if (next == null || next.isEmpty()) {
+                adj[i] = new int[0];
+                continue;
+            }
+            if (next.nextSetBit(0) < first || next.length() - 1 > last) {
+                throw new IllegalStateException("Edge leaves procedure range at statement " + (first + i));
+            }
+            adj[i] = next.stream().map(s -> s - first).toArray();
+        }
+
+        int[] comp = new int[n];
+        int compCount = StronglyConnectedComponents.compute(adj, comp);
+        int[][] members = StronglyConnectedComponents.members(comp, compCount);
+        int[] level = new int[compCount];
+        List<List<Integer>> levels = new ArrayList<>();
+        for (int c = 0; c < compCount; c++) {
+            int lvl = 0;
+            for (int u : members[c]) {
+                for (int v : adj[u]) {
+                    if (comp[v] != c) lvl = Math.max(lvl, level[comp[v]] + 1);
+                }
+            }
+            level[c] = lvl;
+            while (levels.size() <= lvl) levels.add(new ArrayList<>());
+            levels.get(lvl).add(c);
+        }
+
+        long[][] compRows = new long[compCount][];
+        for (List<Integer> sameLevel : levels) {
+            IntStream indices = IntStream.range(0, sameLevel.size());
+            if (sameLevel.size() >= PARALLEL_LEVEL_SIZE) indices = indices.parallel();
+            indices.forEach(k -> {
+                int c = sameLevel.get(k);
+                long[] row = new long[words];
+                boolean any = false;
+                for (int u : members[c]) {
+                    for (int v : adj[u]) {
+                        int bit = first + v - origin;
+                        row[bit >>> 6] |= 1L << bit;
+                        any = true;
+                        long[] reach = compRows[comp[v]];
+                        if (comp[v] != c && reach != null) {
+                            for (int w = 0; w < words; w++) row[w] |= reach[w];
+                        }
+                    }
+                }
+                if (any && members[c].length > 1) {
+                    for (int u : members[c]) {
+                        int bit = first + u - origin;
+                        row[bit >>> 6] |= 1L << bit;
+                    }
+                }
+                compRows[c] = any ? row : null;
+            });
+        }
+
+        for (int i = 0; i < n; i++) {
+            rows[first + i] = compRows[comp[i]];
+            bases[first + i] = origin >>> 6;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.model.queryProcessor;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+class BitSetIndex {
+    private BitSet[] sets = new BitSet[16];
+
+    boolean add(int key, int value) {
+        BitSet set = ensureKey(key);
+        if (set.get(value)) return false;
+        set.set(value);
+        return true;
+    }
+
+    BitSet ensureKey(int key) {
+        if (key >= sets.length) sets = Arrays.copyOf(sets, Math.max(sets.length * 2, key + 1));
+        if (sets[key] == null) sets[key] = new BitSet();
+        return sets[key];
+    }
+
+    BitSet get(int key) {
+        return key >= 0 && key < sets.length ? sets[key] : null;
+    }
+
+    boolean hasKey(int key) {
+        return get(key) != null;
+    }
+
+    boolean contains(int key, int value) {
+        BitSet set = get(key);
+        return set != null && value >= 0 && set.get(value);
+    }
+
+    void clear() {
+        Arrays.fill(sets, null);
+    }
+
+    int keyLimit() {
+        return sets.length;
+    }
+}
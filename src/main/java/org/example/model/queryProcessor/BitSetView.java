@@ -0,0 +1,45 @@
+package org.example.model.queryProcessor;
+
+import java.util.*;
+
+class BitSetView extends AbstractSet<Integer> {
+    private final BitSet bits;
+
+    BitSetView(BitSet bits) {
+        this.bits = bits;
+    }
+
+    BitSet bits() {
+        return bits;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer i && i >= 0 && bits.get(i);
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Iterator<>() {
+            private int next = bits.nextSetBit(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public Integer next() {
+                if (next < 0) throw new NoSuchElementException();
+                int cur = next;
+                next = bits.nextSetBit(cur + 1);
+                return cur;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return bits.cardinality();
+    }
+}
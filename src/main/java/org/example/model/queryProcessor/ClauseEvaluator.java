@@ -0,0 +1,27 @@
+package org.example.model.queryProcessor;
+
+import java.util.BitSet;
+
+// A such-that relation seen through every access path the PKB can answer directly. Arguments
+// and results are entity codes: statement numbers, or procedure / variable ids of the PKB
+// symbol tables. Codes that name no entity (0 or negative) never match. Returned bit sets may
+// be PKB storage and must not be modified.
+interface ClauseEvaluator {
+    boolean exists(int left, int right);
+
+    BitSet forward(int left);
+
+    BitSet backward(int right);
+
+    // Every pair once, as {left column, right column}.
+    int[][] allPairs();
+
+    // Codes with at least one partner, answering a clause whose other side is a wildcard.
+    BitSet lefts();
+
+    BitSet rights();
+
+    boolean anyPair();
+
+    long cardinality();
+}
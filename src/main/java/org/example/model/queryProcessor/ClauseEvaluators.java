@@ -0,0 +1,770 @@
+package org.example.model.queryProcessor;
+
+import org.example.model.enums.EntityType;
+
+import java.util.*;
+
+final class ClauseEvaluators {
+    private ClauseEvaluators() {
+    }
+
+    static ClauseEvaluator of(RelationshipType type, PKB pkb) {
+        return switch (type) {
+            case MODIFIES -> new Modifies(pkb, false);
+            case USES -> new Uses(pkb, false);
+            case CALLS -> new Calls(pkb);
+            case CALLS_STAR -> new CallsStar(pkb);
+            case PARENT -> new Parent(pkb);
+            case PARENT_STAR -> new ParentStar(pkb);
+            case FOLLOWS -> new Follows(pkb);
+            case FOLLOWS_STAR -> new FollowsStar(pkb);
+            case NEXT -> new Next(pkb);
+            case NEXT_STAR -> new NextStar(pkb);
+            case AFFECTS -> new Affects(pkb);
+            case AFFECTS_STAR -> new AffectsStar(pkb);
+        };
+    }
+
+    // Modifies and Uses with procedures on the left.
+    static ClauseEvaluator ofProcedures(RelationshipType type, PKB pkb) {
+        return switch (type) {
+            case MODIFIES -> new Modifies(pkb, true);
+            case USES -> new Uses(pkb, true);
+            default -> throw new IllegalArgumentException("No procedure form of " + type);
+        };
+    }
+
+    // Statement literal as a PKB index; anything that is not an existing statement maps to 0,
+    // which every lookup treats as "no such statement".
+    static int stmtArg(PKB pkb, String arg) {
+        if (arg.length() > 9 || !arg.matches("\\d+")) return 0;
+        int stmt = Integer.parseInt(arg);
+        return stmt <= pkb.getMaxStmt() ? stmt : 0;
+    }
+
+    private static final BitSet NONE = new BitSet();
+
+    private static BitSet orNone(BitSet ids) {
+        return ids == null ? NONE : ids;
+    }
+
+    private static BitSet bits(Collection<Integer> values) {
+        if (values instanceof BitSetView view) return view.bits();
+        BitSet result = new BitSet();
+        for (int value : values) result.set(value);
+        return result;
+    }
+
+    private static BitSet bits(int... values) {
+        BitSet result = new BitSet();
+        for (int value : values) result.set(value);
+        return result;
+    }
+
+    private static BitSet stmtSingleton(int stmt) {
+        return stmt == 0 ? NONE : bits(stmt);
+    }
+
+    private static int sizeOf(BitSet ids) {
+        return ids == null ? 0 : ids.cardinality();
+    }
+
+    // Growable pair of int columns for allPairs.
+    private static final class PairColumns {
+        private int[] lefts;
+        private int[] rights;
+        private int size;
+
+        PairColumns(long expected) {
+            int capacity = (int) Math.max(16, Math.min(expected, Integer.MAX_VALUE / 2));
+            lefts = new int[capacity];
+            rights = new int[capacity];
+        }
+
+        void add(int left, int right) {
+            if (size == lefts.length) {
+                lefts = Arrays.copyOf(lefts, size * 2);
+                rights = Arrays.copyOf(rights, size * 2);
+            }
+            lefts[size] = left;
+            rights[size++] = right;
+        }
+
+        void addAll(int left, BitSet rights) {
+            for (int right = rights.nextSetBit(0); right >= 0; right = rights.nextSetBit(right + 1)) add(left, right);
+        }
+
+        int[][] toArray() {
+            return new int[][]{Arrays.copyOf(lefts, size), Arrays.copyOf(rights, size)};
+        }
+    }
+
+    // Statements (or, in the procedure form, procedures) on the left, variables on the right.
+    private abstract static class VariableRelation implements ClauseEvaluator {
+        final PKB pkb;
+        private final boolean procedures;
+        private long cardinality = -1;
+
+        VariableRelation(PKB pkb, boolean procedures) {
+            this.pkb = pkb;
+            this.procedures = procedures;
+        }
+
+        abstract BitSet stmtVars(int stmt);
+
+        abstract BitSet procVars(int procId);
+
+        abstract BitSet stmtsWith(int varId);
+
+        abstract BitSet procsWith(int varId);
+
+        private int[] leftDomain() {
+            return procedures ? pkb.getProcedureIds() : pkb.getStmtsOfType(EntityType.STMT);
+        }
+
+        @Override
+        public boolean exists(int left, int right) {
+            return right >= 0 && forward(left).get(right);
+        }
+
+        @Override
+        public BitSet forward(int left) {
+            if (procedures) return left < 0 ? NONE : orNone(procVars(left));
+            return left <= 0 ? NONE : orNone(stmtVars(left));
+        }
+
+        @Override
+        public BitSet backward(int right) {
+            if (right < 0) return NONE;
+            return orNone(procedures ? procsWith(right) : stmtsWith(right));
+        }
+
+        @Override
+        public int[][] allPairs() {
+            PairColumns pairs = new PairColumns(cardinality());
+            for (int left : leftDomain()) pairs.addAll(left, forward(left));
+            return pairs.toArray();
+        }
+
+        @Override
+        public BitSet lefts() {
+            BitSet result = new BitSet();
+            for (int left : leftDomain()) {
+                if (!forward(left).isEmpty()) result.set(left);
+            }
+            return result;
+        }
+
+        @Override
+        public BitSet rights() {
+            BitSet result = new BitSet();
+            for (int var : pkb.getVariableIds()) {
+                if (!backward(var).isEmpty()) result.set(var);
+            }
+            return result;
+        }
+
+        @Override
+        public boolean anyPair() {
+            for (int left : leftDomain()) {
+                if (!forward(left).isEmpty()) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public long cardinality() {
+            if (cardinality < 0) {
+                long pairs = 0;
+                for (int left : leftDomain()) pairs += forward(left).cardinality();
+                cardinality = pairs;
+            }
+            return cardinality;
+        }
+    }
+
+    private static final class Modifies extends VariableRelation {
+        Modifies(PKB pkb, boolean procedures) {
+            super(pkb, procedures);
+        }
+
+        @Override
+        BitSet stmtVars(int stmt) {
+            return pkb.getModifiedVarIds(stmt);
+        }
+
+        @Override
+        BitSet procVars(int procId) {
+            return pkb.getProcModifiedVarIds(procId);
+        }
+
+        @Override
+        BitSet stmtsWith(int varId) {
+            return pkb.getStmtsModifyingIds(varId);
+        }
+
+        @Override
+        BitSet procsWith(int varId) {
+            return pkb.getProcsModifyingIds(varId);
+        }
+    }
+
+    private static final class Uses extends VariableRelation {
+        Uses(PKB pkb, boolean procedures) {
+            super(pkb, procedures);
+        }
+
+        @Override
+        BitSet stmtVars(int stmt) {
+            return pkb.getUsedVarIds(stmt);
+        }
+
+        @Override
+        BitSet procVars(int procId) {
+            return pkb.getProcUsedVarIds(procId);
+        }
+
+        @Override
+        BitSet stmtsWith(int varId) {
+            return pkb.getStmtsUsingIds(varId);
+        }
+
+        @Override
+        BitSet procsWith(int varId) {
+            return pkb.getProcsUsingIds(varId);
+        }
+    }
+
+    private static class Calls implements ClauseEvaluator {
+        final PKB pkb;
+
+        Calls(PKB pkb) {
+            this.pkb = pkb;
+        }
+
+        BitSet callees(int procId) {
+            return pkb.getCalleeIds(procId);
+        }
+
+        BitSet callers(int procId) {
+            return pkb.getCallerIds(procId);
+        }
+
+        @Override
+        public boolean exists(int left, int right) {
+            return right >= 0 && forward(left).get(right);
+        }
+
+        @Override
+        public BitSet forward(int left) {
+            return left < 0 ? NONE : orNone(callees(left));
+        }
+
+        @Override
+        public BitSet backward(int right) {
+            return right < 0 ? NONE : orNone(callers(right));
+        }
+
+        @Override
+        public int[][] allPairs() {
+            PairColumns pairs = new PairColumns(cardinality());
+            for (int p = 0; p < pkb.getProcedureTable().size(); p++) pairs.addAll(p, forward(p));
+            return pairs.toArray();
+        }
+
+        @Override
+        public BitSet lefts() {
+            BitSet result = new BitSet();
+            for (int p = 0; p < pkb.getProcedureTable().size(); p++) {
+                if (!forward(p).isEmpty()) result.set(p);
+            }
+            return result;
+        }
+
+        @Override
+        public BitSet rights() {
+            BitSet result = new BitSet();
+            for (int p = 0; p < pkb.getProcedureTable().size(); p++) {
+                if (!backward(p).isEmpty()) result.set(p);
+            }
+            return result;
+        }
+
+        @Override
+        public boolean anyPair() {
+            for (int p = 0; p < pkb.getProcedureTable().size(); p++) {
+                if (sizeOf(pkb.getCalleeIds(p)) > 0) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public long cardinality() {
+            long pairs = 0;
+            for (int p = 0; p < pkb.getProcedureTable().size(); p++) pairs += sizeOf(callees(p));
+            return pairs;
+        }
+    }
+
+    private static final class CallsStar extends Calls {
+        CallsStar(PKB pkb) {
+            super(pkb);
+        }
+
+        @Override
+        BitSet callees(int procId) {
+            return pkb.getClosure(RelationshipType.CALLS_STAR).successors(procId);
+        }
+
+        @Override
+        BitSet callers(int procId) {
+            return pkb.getClosure(RelationshipType.CALLS_STAR).predecessors(procId);
+        }
+
+        @Override
+        public long cardinality() {
+            return pkb.getClosure(RelationshipType.CALLS_STAR).pairCount();
+        }
+    }
+
+    // Statements on both sides. Direct relations enumerate their left domain; transitive ones
+    // extend their direct relation, keep its existence check and list pairs from the closure.
+    private abstract static class StmtRelation implements ClauseEvaluator {
+        final PKB pkb;
+        private long cardinality = -1;
+
+        StmtRelation(PKB pkb) {
+            this.pkb = pkb;
+        }
+
+        abstract BitSet successors(int stmt);
+
+        abstract BitSet predecessors(int stmt);
+
+        abstract long estimate();
+
+        boolean contains(int left, int right) {
+            return successors(left).get(right);
+        }
+
+        boolean hasSuccessor(int stmt) {
+            return !successors(stmt).isEmpty();
+        }
+
+        boolean hasPredecessor(int stmt) {
+            return !predecessors(stmt).isEmpty();
+        }
+
+        // Statements that can occur on either side.
+        EntityType stmtType() {
+            return EntityType.STMT;
+        }
+
+        private boolean isStmt(int code) {
+            return code > 0 && code <= pkb.getMaxStmt();
+        }
+
+        @Override
+        public boolean exists(int left, int right) {
+            return isStmt(left) && isStmt(right) && contains(left, right);
+        }
+
+        @Override
+        public BitSet forward(int left) {
+            return isStmt(left) ? successors(left) : NONE;
+        }
+
+        @Override
+        public BitSet backward(int right) {
+            return isStmt(right) ? predecessors(right) : NONE;
+        }
+
+        @Override
+        public int[][] allPairs() {
+            PairColumns pairs = new PairColumns(cardinality());
+            for (int stmt : pkb.getStmtsOfType(stmtType())) pairs.addAll(stmt, successors(stmt));
+            return pairs.toArray();
+        }
+
+        @Override
+        public BitSet lefts() {
+            BitSet result = new BitSet();
+            for (int stmt : pkb.getStmtsOfType(stmtType())) {
+                if (hasSuccessor(stmt)) result.set(stmt);
+            }
+            return result;
+        }
+
+        @Override
+        public BitSet rights() {
+            BitSet result = new BitSet();
+            for (int stmt : pkb.getStmtsOfType(stmtType())) {
+                if (hasPredecessor(stmt)) result.set(stmt);
+            }
+            return result;
+        }
+
+        int[][] closurePairs(RelationshipType type) {
+            TransitiveClosure closure = pkb.getClosure(type);
+            PairColumns pairs = new PairColumns(closure.pairCount());
+            for (int a = 0; a < closure.size(); a++) {
+                int left = a;
+                closure.forEachSuccessor(a, b -> pairs.add(left, b));
+            }
+            return pairs.toArray();
+        }
+
+        @Override
+        public boolean anyPair() {
+            for (int stmt : pkb.getStmtsOfType(stmtType())) {
+                if (hasSuccessor(stmt)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public long cardinality() {
+            if (cardinality < 0) cardinality = estimate();
+            return cardinality;
+        }
+    }
+
+    private static class Parent extends StmtRelation {
+        Parent(PKB pkb) {
+            super(pkb);
+        }
+
+        @Override
+        BitSet successors(int stmt) {
+            return orNone(pkb.getChildIds(stmt));
+        }
+
+        @Override
+        BitSet predecessors(int stmt) {
+            return stmtSingleton(pkb.getParent(stmt));
+        }
+
+        @Override
+        boolean contains(int left, int right) {
+            return pkb.getParent(right) == left;
+        }
+
+        @Override
+        boolean hasSuccessor(int stmt) {
+            return pkb.getLastDescendant(stmt) > stmt;
+        }
+
+        @Override
+        boolean hasPredecessor(int stmt) {
+            return pkb.getParent(stmt) != 0;
+        }
+
+        @Override
+        long estimate() {
+            long pairs = 0;
+            for (int stmt : pkb.getStmtsOfType(EntityType.STMT)) {
+                if (pkb.getParent(stmt) != 0) pairs++;
+            }
+            return pairs;
+        }
+    }
+
+    private static final class ParentStar extends Parent {
+        ParentStar(PKB pkb) {
+            super(pkb);
+        }
+
+        @Override
+        BitSet successors(int stmt) {
+            return bits(pkb.getDescendants(stmt));
+        }
+
+        @Override
+        BitSet predecessors(int stmt) {
+            return bits(pkb.getAncestors(stmt));
+        }
+
+        @Override
+        boolean contains(int left, int right) {
+            return pkb.isParentStar(left, right);
+        }
+
+        // Descendants are the statement range after the parent, so pairs come straight from it.
+        @Override
+        public int[][] allPairs() {
+            PairColumns pairs = new PairColumns(cardinality());
+            for (int stmt : pkb.getStmtsOfType(EntityType.STMT)) {
+                for (int child = stmt + 1; child <= pkb.getLastDescendant(stmt); child++) pairs.add(stmt, child);
+            }
+            return pairs.toArray();
+        }
+
+        @Override
+        long estimate() {
+            long pairs = 0;
+            for (int stmt : pkb.getStmtsOfType(EntityType.STMT)) pairs += pkb.getLastDescendant(stmt) - stmt;
+            return pairs;
+        }
+    }
+
+    private static class Follows extends StmtRelation {
+        Follows(PKB pkb) {
+            super(pkb);
+        }
+
+        @Override
+        BitSet successors(int stmt) {
+            return stmtSingleton(pkb.getFollowsSuccessor(stmt));
+        }
+
+        @Override
+        BitSet predecessors(int stmt) {
+            return stmtSingleton(pkb.getFollowsPredecessor(stmt));
+        }
+
+        @Override
+        boolean contains(int left, int right) {
+            return pkb.getFollowsSuccessor(left) == right;
+        }
+
+        // Everything but the last (first) statement of a list, for Follows* as well.
+        @Override
+        boolean hasSuccessor(int stmt) {
+            return pkb.getFollowsSuccessor(stmt) != 0;
+        }
+
+        @Override
+        boolean hasPredecessor(int stmt) {
+            return pkb.getFollowsPredecessor(stmt) != 0;
+        }
+
+        @Override
+        long estimate() {
+            long pairs = 0;
+            for (int[] list : pkb.getStmtLists()) pairs += list.length - 1;
+            return pairs;
+        }
+    }
+
+    private static final class FollowsStar extends Follows {
+        FollowsStar(PKB pkb) {
+            super(pkb);
+        }
+
+        @Override
+        BitSet successors(int stmt) {
+            return bits(pkb.getFollowersStar(stmt));
+        }
+
+        @Override
+        BitSet predecessors(int stmt) {
+            return bits(pkb.getPredecessorsStar(stmt));
+        }
+
+        @Override
+        boolean contains(int left, int right) {
+            return pkb.isFollowsStar(left, right);
+        }
+
+        @Override
+        public int[][] allPairs() {
+            PairColumns pairs = new PairColumns(cardinality());
+            for (int[] list : pkb.getStmtLists()) {
+                for (int i = 0; i < list.length; i++) {
+                    for (int j = i + 1; j < list.length; j++) pairs.add(list[i], list[j]);
+                }
+            }
+            return pairs.toArray();
+        }
+
+        @Override
+        long estimate() {
+            long pairs = 0;
+            for (int[] list : pkb.getStmtLists()) pairs += (long) list.length * (list.length - 1) / 2;
+            return pairs;
+        }
+    }
+
+    private static class Next extends StmtRelation {
+        Next(PKB pkb) {
+            super(pkb);
+        }
+
+        @Override
+        BitSet successors(int stmt) {
+            return orNone(pkb.getNextIds(stmt));
+        }
+
+        @Override
+        BitSet predecessors(int stmt) {
+            return orNone(pkb.getPrevIds(stmt));
+        }
+
+        // Next* has a partner exactly where Next does.
+        @Override
+        boolean hasSuccessor(int stmt) {
+            return pkb.getNextIds(stmt) != null;
+        }
+
+        @Override
+        boolean hasPredecessor(int stmt) {
+            return pkb.getPrevIds(stmt) != null;
+        }
+
+        @Override
+        long estimate() {
+            long pairs = 0;
+            for (int stmt : pkb.getStmtsOfType(EntityType.STMT)) pairs += sizeOf(pkb.getNextIds(stmt));
+            return pairs;
+        }
+    }
+
+    private static final class NextStar extends Next {
+        NextStar(PKB pkb) {
+            super(pkb);
+        }
+
+        @Override
+        BitSet successors(int stmt) {
+            return bits(pkb.getNextStar(stmt));
+        }
+
+        @Override
+        BitSet predecessors(int stmt) {
+            return bits(pkb.getPrevStar(stmt));
+        }
+
+        @Override
+        boolean contains(int left, int right) {
+            return pkb.isNextStar(left, right);
+        }
+
+        @Override
+        public int[][] allPairs() {
+            return closurePairs(RelationshipType.NEXT_STAR);
+        }
+
+        // Without a materialized closure every procedure is assumed to be one loop.
+        @Override
+        long estimate() {
+            TransitiveClosure closure = pkb.getCachedClosure(RelationshipType.NEXT_STAR);
+            if (closure != null) return closure.pairCount();
+            long pairs = 0;
+            for (int[] range : pkb.procedureRanges()) {
+                long size = range[1] - range[0] + 1;
+                pairs += size * size;
+            }
+            return pairs;
+        }
+    }
+
+    private static class Affects extends StmtRelation {
+        Affects(PKB pkb) {
+            super(pkb);
+        }
+
+        @Override
+        BitSet successors(int stmt) {
+            return bits(pkb.getAffected(stmt));
+        }
+
+        @Override
+        BitSet predecessors(int stmt) {
+            return bits(pkb.getAffecting(stmt));
+        }
+
+        @Override
+        boolean contains(int left, int right) {
+            return pkb.isAffects(left, right);
+        }
+
+        @Override
+        boolean hasSuccessor(int stmt) {
+            return !pkb.getAffected(stmt).isEmpty();
+        }
+
+        @Override
+        boolean hasPredecessor(int stmt) {
+            return !pkb.getAffecting(stmt).isEmpty();
+        }
+
+        @Override
+        EntityType stmtType() {
+            return EntityType.ASSIGN;
+        }
+
+        // Listing every pair is one reaching-definitions pass rather than a search per assignment.
+        @Override
+        public int[][] allPairs() {
+            pkb.computeAffects();
+            return super.allPairs();
+        }
+
+        @Override
+        public BitSet lefts() {
+            pkb.computeAffects();
+            return super.lefts();
+        }
+
+        @Override
+        public BitSet rights() {
+            pkb.computeAffects();
+            return super.rights();
+        }
+
+        @Override
+        public boolean anyPair() {
+            pkb.computeAffects();
+            return super.anyPair();
+        }
+
+        // Lazy mode has no Affects yet, so count assignment pairs linked by a used variable.
+        @Override
+        long estimate() {
+            long pairs = 0;
+            for (int stmt : pkb.getStmtsOfType(EntityType.ASSIGN)) {
+                if (!pkb.isLazyAffects()) {
+                    pairs += pkb.getAffected(stmt).size();
+                    continue;
+                }
+                BitSet mods = pkb.getModifiedVarIds(stmt);
+                if (mods != null && !mods.isEmpty()) pairs += sizeOf(pkb.getStmtsUsingIds(mods.nextSetBit(0)));
+            }
+            return pairs;
+        }
+    }
+
+    private static final class AffectsStar extends Affects {
+        AffectsStar(PKB pkb) {
+            super(pkb);
+        }
+
+        @Override
+        BitSet successors(int stmt) {
+            return bits(pkb.getAffectedStar(stmt));
+        }
+
+        @Override
+        BitSet predecessors(int stmt) {
+            return bits(pkb.getAffectingStar(stmt));
+        }
+
+        @Override
+        boolean contains(int left, int right) {
+            return pkb.isAffectsStar(left, right);
+        }
+
+        @Override
+        public int[][] allPairs() {
+            return closurePairs(RelationshipType.AFFECTS_STAR);
+        }
+
+        @Override
+        long estimate() {
+            TransitiveClosure closure = pkb.getCachedClosure(RelationshipType.AFFECTS_STAR);
+            if (closure != null) return closure.pairCount();
+            long direct = super.estimate();
+            return direct * direct;
+        }
+    }
+}
@@ -4,14 +4,14 @@ import org.example.model.ast.TNode;
 import org.example.model.enums.EntityType;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
 
 public class DesignExtractor {
     private final PKB pkb;
     private int currentStmtNumber = 1;
     private final Deque<Integer> parentStack = new ArrayDeque<>();
     private String currentProcedure;
-    private final Map<Integer, Set<Integer>> cfg = new HashMap<>();
     private final Map<Integer, List<Runnable>> pendingAfterIfEnds = new HashMap<>();
     private final Map<TNode,Integer> nodeToStmt = new HashMap<>();
     private final Deque<List<Integer>> whileFalseStack = new ArrayDeque<>();
@@ -30,48 +30,23 @@ public class DesignExtractor {
         propagateCallModifies();
         propagateCallUses();
         extractNextRelations();
-        extractAffectsRelations();
+        if (!pkb.isLazyAffects()) pkb.computeAffects();
+        pkb.freeze();
     }
 
     private void processProcedure(TNode procNode) {
         currentProcedure = procNode.getAttr().replace("\"", "");
         pkb.addProcedure(currentProcedure);
         whileFalseStack.clear();
+        int first = currentStmtNumber;
         TNode stmtList = procNode.getFirstChild();
         processStmtList(stmtList);
+        pkb.setProcedureRange(currentProcedure, first, currentStmtNumber - 1);
         pendingAfterIfEnds.clear();
         parentStack.clear();
         currentProcedure = null;
     }
 
-    private void extractAffectsRelations() {
-        for (String proc : pkb.getAllProcedures()) {
-            Set<Integer> stmts = pkb.getAllStmts().stream()
-                    .filter(s -> proc.equals(pkb.getProcedureOfStmt(s)))
-                    .collect(Collectors.toSet());
-            for (int a1 : stmts) {
-                if (pkb.getEntityType(a1) != EntityType.ASSIGN) continue;
-                Set<String> mods = pkb.getModifiedByStmt(a1);
-                if (mods.size() != 1) continue;
-                String v = mods.iterator().next();
-                Deque<Integer> dq = new ArrayDeque<>(pkb.getNext(a1));
-                Set<Integer> seen = new HashSet<>();
-                while (!dq.isEmpty()) {
-                    int cur = dq.pop();
-                    if (!seen.add(cur)) continue;
-                    if (pkb.getUsedByStmt(cur).contains(v) &&
-                            pkb.getEntityType(cur) == EntityType.ASSIGN)
-                        pkb.addAffects(a1, cur);
-                    EntityType et = pkb.getEntityType(cur);
-                    boolean redefines = (et == EntityType.ASSIGN || et == EntityType.CALL)
-                            && pkb.getModifiedByStmt(cur).contains(v);
-                    if (redefines) continue;
-                    dq.addAll(pkb.getNext(cur));
-                }
-            }
-        }
-    }
-
     private void processStmt(TNode stmt, int stmtNumber) {
         switch (stmt.getType()) {
             case ASSIGN -> processAssign(stmt, stmtNumber);
@@ -96,10 +71,13 @@ public class DesignExtractor {
         }
         TNode exprNode = varNode.getRightSibling();
         pkb.setAssignRhsTree(stmtNumber, exprNode);
-        collectConstants(exprNode);
+        Set<String> constants = new HashSet<>();
+        collectConstants(exprNode, constants);
+        for (String constant : constants) pkb.setAssignRhsConstant(stmtNumber, constant);
         Set<String> usedVars = extractVariablesFromNode(exprNode);
         for (String usedVar : usedVars) {
             pkb.addVariable(usedVar);
+            pkb.setAssignRhsVar(stmtNumber, usedVar);
             pkb.setUsesStmt(stmtNumber, usedVar);
             if (currentProcedure != null) {
                 pkb.setUsesProc(currentProcedure, usedVar);
@@ -114,15 +92,16 @@ public class DesignExtractor {
         whileFalseStack.push(new ArrayList<>());
         TNode stmt = stmtListNode.getFirstChild();
         Integer prev = null;
+        List<Integer> members = new ArrayList<>();
         while (stmt != null) {
             int curr = currentStmtNumber++;
+            members.add(curr);
             List<Integer> localPending = whileFalseStack.peek();
             if (!localPending.isEmpty()) {
                 for (int h : localPending) addNextEdge(h, curr);
                 localPending.clear();
             }
             pkb.addStmt(curr, stmt.getType());
-            pkb.setStmtProcedure(curr, currentProcedure);
             nodeToStmt.put(stmt, curr);
             if (!parentStack.isEmpty()) pkb.setParent(parentStack.peek(), curr);
             if (prev != null) {
@@ -141,6 +120,7 @@ public class DesignExtractor {
             prev = curr;
             stmt = stmt.getRightSibling();
         }
+        pkb.addStmtList(members.stream().mapToInt(Integer::intValue).toArray());
         List<Integer> leftovers = whileFalseStack.pop();
         if (!whileFalseStack.isEmpty() && !leftovers.isEmpty()) {
             whileFalseStack.peek().addAll(leftovers);
@@ -163,6 +143,7 @@ public class DesignExtractor {
         int firstInBody = currentStmtNumber;
         processStmtList(body);
         int lastInBody = currentStmtNumber - 1;
+        pkb.setSubtreeEnd(whileNr, lastInBody);
         int lastTopLevel = -1;
         for (int i = lastInBody; i >= firstInBody; i--) {
             Integer p = pkb.getParentMap().get(i);
@@ -204,9 +185,7 @@ public class DesignExtractor {
             pkb.setCalls(currentProcedure, calledProc);
         }
         pkb.setCallStmt(stmtNumber, calledProc);
-        if (!pkb.getCallsMap().containsKey(calledProc)) {
-            pkb.addProcedure(calledProc);
-        }
+        pkb.addProcedure(calledProc);
         Set<String> modifies = pkb.getModifiedByProc(calledProc);
         modifies.forEach(var -> {
             pkb.setModifiesProc(currentProcedure, var);
@@ -265,6 +244,7 @@ public class DesignExtractor {
         int elseStart = currentStmtNumber;
         processStmtList(elseList);
         int elseEnd = currentStmtNumber - 1;
+        pkb.setSubtreeEnd(ifStmtNr, elseEnd);
         parentStack.pop();
         addNextEdge(ifStmtNr, thenStart);
         addNextEdge(ifStmtNr, elseStart);
@@ -320,72 +300,66 @@ public class DesignExtractor {
     }
 
     private void propagateCallModifies() {
-        boolean changed;
-        do {
-            changed = false;
-            for (String caller : pkb.getAllProcedures()) {
-                for (String callee : pkb.getCallsStar(caller)) {
-                    for (String var : pkb.getModifiedByProc(callee)) {
-                        if (pkb.setModifiesProc(caller, var)) changed = true;
-                    }
-                }
-            }
-        } while (changed);
-        for (Integer stmt : pkb.getAllCallStmts()) {
-            String proc = pkb.getCalledProcByStmt(stmt);
-            for (String var : pkb.getModifiedByProc(proc)) {
-                pkb.setModifiesStmt(stmt, var);
-                pkb.propagateModifiesToParent(stmt, var);
-            }
+        propagateOverCallGraph(pkb::getProcModifiedVarIds, pkb::addProcModifiedVarIds);
+        SymbolTable procs = pkb.getProcedureTable();
+        for (int stmt : pkb.getAllCallStmts()) {
+            BitSet vars = pkb.getProcModifiedVarIds(procs.idOf(pkb.getCalledProcByStmt(stmt)));
+            if (vars != null && !vars.isEmpty()) pkb.addModifiedVarIds(stmt, vars);
         }
     }
 
     private void propagateCallUses() {
-        boolean changed;
-        do {
-            changed = false;
-            for (String caller : pkb.getAllProcedures()) {
-                for (String callee : pkb.getCallsStar(caller)) {
-                    for (String var : pkb.getUsedByProc(callee)) {
-                        if (pkb.setUsesProc(caller, var)) changed = true;
-                    }
+        propagateOverCallGraph(pkb::getProcUsedVarIds, pkb::addProcUsedVarIds);
+        SymbolTable procs = pkb.getProcedureTable();
+        for (int stmt : pkb.getAllCallStmts()) {
+            BitSet vars = pkb.getProcUsedVarIds(procs.idOf(pkb.getCalledProcByStmt(stmt)));
+            if (vars != null && !vars.isEmpty()) pkb.addUsedVarIds(stmt, vars);
+        }
+    }
+
+    // Condenses the call graph and walks its components callees-first, so every procedure's
+    // variable set is final before any caller reads it and each set is propagated once.
+    private void propagateOverCallGraph(IntFunction<BitSet> own, ObjIntConsumer<BitSet> add) {
+        int procCount = pkb.getProcedureTable().size();
+        int[][] callees = new int[procCount][];
+        for (int p = 0; p < procCount; p++) {
+            BitSet ids = pkb.getCalleeIds(p);
+            callees[p] = ids == null ? new int[0] : ids.stream().toArray();
+        }
+        int[] comp = new int[procCount];
+        int compCount = StronglyConnectedComponents.compute(callees, comp);
+        int[][] members = StronglyConnectedComponents.members(comp, compCount);
+        BitSet[] compVars = new BitSet[compCount];
+        for (int c = 0; c < compCount; c++) {
+            BitSet vars = new BitSet();
+            for (int p : members[c]) {
+                BitSet mine = own.apply(p);
+                if (mine != null) vars.or(mine);
+                for (int callee : callees[p]) {
+                    if (comp[callee] != c) vars.or(compVars[comp[callee]]);
                 }
             }
-        } while (changed);
-        for (Integer callStmt : pkb.getAllCallStmts()) {
-            String callee = pkb.getCalledProcByStmt(callStmt);
-            for (String var : pkb.getUsedByProc(callee)) {
-                pkb.setUsesStmt(callStmt, var);
-                pkb.propagateUsesToParent(callStmt, var);
-            }
+            compVars[c] = vars;
+            if (vars.isEmpty()) continue;
+            for (int p : members[c]) add.accept(vars, p);
         }
     }
 
     private void addNextEdge(int from, int to) {
         pkb.addNext(from, to);
-        cfg.computeIfAbsent(from, k -> new HashSet<>()).add(to);
     }
 
     private void collectConstants(TNode n) {
+        collectConstants(n, new HashSet<>());
+    }
+
+    private void collectConstants(TNode n, Set<String> constants) {
         if (n == null) return;
-        if (n.getType() == EntityType.CONSTANT) pkb.addConstant(n.getAttr());
-        for (TNode c = n.getFirstChild(); c != null; c = c.getRightSibling()) collectConstants(c);
+        if (n.getType() == EntityType.CONSTANT && constants.add(n.getAttr())) pkb.addConstant(n.getAttr());
+        for (TNode c = n.getFirstChild(); c != null; c = c.getRightSibling()) collectConstants(c, constants);
     }
 
     private void extractNextRelations() {
-        for (Integer from : cfg.keySet()) {
-            Set<Integer> visited = new HashSet<>();
-            Deque<Integer> stack = new ArrayDeque<>();
-            stack.push(from);
-            while (!stack.isEmpty()) {
-                int curr = stack.pop();
-                for (int next : cfg.getOrDefault(curr, Set.of())) {
-                    if (visited.add(next)) {
-                        pkb.addNextStar(from, next);
-                        stack.push(next);
-                    }
-                }
-            }
-        }
+        if (!pkb.isLazyNextStar()) pkb.getClosure(RelationshipType.NEXT_STAR);
     }
 }
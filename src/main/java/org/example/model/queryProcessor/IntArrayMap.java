@@ -0,0 +1,69 @@
+package org.example.model.queryProcessor;
+
+import java.util.*;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+class IntArrayMap extends AbstractMap<Integer, Integer> {
+    private final Supplier<int[]> values;
+    private final IntSupplier limit;
+
+    IntArrayMap(Supplier<int[]> values, IntSupplier limit) {
+        this.values = values;
+        this.limit = limit;
+    }
+
+    @Override
+    public Integer get(Object key) {
+        if (!(key instanceof Integer k)) return null;
+        int[] arr = values.get();
+        if (k <= 0 || k >= arr.length || arr[k] == 0) return null;
+        return arr[k];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public Set<Entry<Integer, Integer>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Integer, Integer>> iterator() {
+                int[] arr = values.get();
+                int end = Math.min(limit.getAsInt() + 1, arr.length);
+                return new Iterator<>() {
+                    private int next = advance(1);
+
+                    private int advance(int from) {
+                        while (from < end && arr[from] == 0) from++;
+                        return from;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < end;
+                    }
+
+                    @Override
+                    public Entry<Integer, Integer> next() {
+                        if (next >= end) throw new NoSuchElementException();
+                        Entry<Integer, Integer> e = new SimpleImmutableEntry<>(next, arr[next]);
+                        next = advance(next + 1);
+                        return e;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                int[] arr = values.get();
+                int end = Math.min(limit.getAsInt() + 1, arr.length);
+                int n = 0;
+                for (int i = 1; i < end; i++) if (arr[i] != 0) n++;
+                return n;
+            }
+        };
+    }
+}
@@ -0,0 +1,70 @@
+package org.example.model.queryProcessor;
+
+import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.ToIntFunction;
+
+// Read-only map over a BitSetIndex: keys are decoded from their codes and values are name views
+// of the stored bit sets, so nothing is copied up front.
+class NameIndexView<K> extends AbstractMap<K, Set<String>> {
+    private final BitSetIndex index;
+    private final IntFunction<K> keyOf;
+    private final ToIntFunction<Object> codeOf;
+    private final SymbolTable values;
+
+    NameIndexView(BitSetIndex index, IntFunction<K> keyOf, ToIntFunction<Object> codeOf, SymbolTable values) {
+        this.index = index;
+        this.keyOf = keyOf;
+        this.codeOf = codeOf;
+        this.values = values;
+    }
+
+    @Override
+    public Set<String> get(Object key) {
+        BitSet ids = index.get(codeOf.applyAsInt(key));
+        return ids == null ? null : new NameSetView(ids, values);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return index.hasKey(codeOf.applyAsInt(key));
+    }
+
+    @Override
+    public Set<Entry<K, Set<String>>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<K, Set<String>>> iterator() {
+                int end = index.keyLimit();
+                return new Iterator<>() {
+                    private int next = advance(0);
+
+                    private int advance(int from) {
+                        while (from < end && !index.hasKey(from)) from++;
+                        return from;
+                    }
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < end;
+                    }
+
+                    @Override
+                    public Entry<K, Set<String>> next() {
+                        if (next >= end) throw new NoSuchElementException();
+                        Entry<K, Set<String>> e = new SimpleImmutableEntry<>(keyOf.apply(next), new NameSetView(index.get(next), values));
+                        next = advance(next + 1);
+                        return e;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                int n = 0;
+                for (int code = 0; code < index.keyLimit(); code++) if (index.hasKey(code)) n++;
+                return n;
+            }
+        };
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.model.queryProcessor;
+
+import java.util.*;
+
+// Read-only names of the ids in a bit set, decoded while iterating.
+class NameSetView extends AbstractSet<String> {
+    private final BitSet ids;
+    private final SymbolTable table;
+
+    NameSetView(BitSet ids, SymbolTable table) {
+        this.ids = ids;
+        this.table = table;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String name)) return false;
+        int id = table.idOf(name);
+        return id >= 0 && ids.get(id);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        Iterator<Integer> codes = new BitSetView(ids).iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return codes.hasNext();
+            }
+
+            @Override
+            public String next() {
+                return table.nameOf(codes.next());
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return ids.cardinality();
+    }
+}
@@ -4,60 +4,492 @@ import org.example.model.ast.TNode;
 import org.example.model.enums.EntityType;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
 
 public class PKB {
-    private final Map<Integer, Integer> parentMap = new HashMap<>();
-    private final Map<Integer, Set<Integer>> parentStarCache = new HashMap<>();
-    private final Map<Integer, Set<Integer>> childrenMap = new HashMap<>();
-    private final Map<Integer, Set<Integer>> descendantCache = new HashMap<>();
+    private static final EntityType[] ENTITY_TYPES = EntityType.values();
+
+    private int maxStmt;
+    private final BitSet stmts = new BitSet();
+    private byte[] stmtTypes = new byte[64];
+    private int[] parentOf = new int[64];
+    private int[] subtreeEnd = new int[64];
+    private int[] followsNext = new int[64];
+    private int[] followsPrev = new int[64];
+    private int[] stmtListOf = new int[64];
+    private int[] stmtListPos = new int[64];
+    private final List<int[]> stmtLists = new ArrayList<>();
+    private final List<int[]> procRanges = new ArrayList<>();
+    private int[] procFirst = new int[16];
+    private int[] procLast = new int[16];
+    private int[] callStmtProc = new int[64];
+
+    private final SymbolTable variableTable = new SymbolTable();
+    private final SymbolTable procedureTable = new SymbolTable();
+    private final SymbolTable constantTable = new SymbolTable();
+
+    private final BitSetIndex childrenMap = new BitSetIndex();
+
+    private final BitSetIndex modifiesStmt = new BitSetIndex();
+    private final BitSetIndex modifiesProc = new BitSetIndex();
+    private final BitSetIndex varToStmtsModifyingIt = new BitSetIndex();
+    private final BitSetIndex varToProcsModifyingIt = new BitSetIndex();
+
+    private final BitSetIndex usesStmt = new BitSetIndex();
+    private final BitSetIndex usesProc = new BitSetIndex();
+    private final BitSetIndex varToProcsUsingIt = new BitSetIndex();
+
+    private final BitSet procedures = new BitSet();
+    private final BitSet variables = new BitSet();
+
+    private final BitSetIndex callsMap = new BitSetIndex();
+    private final BitSetIndex callersMap = new BitSetIndex();
+    private final BitSetIndex callsStarCache = new BitSetIndex();
+
+    private final BitSetIndex varToStmtsUsingIt = new BitSetIndex();
+
+    private final BitSetIndex nextMap = new BitSetIndex();
+    private final BitSetIndex prevMap = new BitSetIndex();
+    private final BitSetIndex nextStarForward = new BitSetIndex();
+    private final BitSetIndex nextStarBackward = new BitSetIndex();
+    private boolean lazyNextStar;
+
+    private final BitSetIndex assignLhsToStmts = new BitSetIndex();
+
+    private final BitSetIndex ifControlVars = new BitSetIndex();
+    private final BitSetIndex varToIfs = new BitSetIndex();
+
+    private final BitSetIndex affectsMap = new BitSetIndex();
+    private final BitSetIndex affectedByMap = new BitSetIndex();
+    private final BitSetIndex affectsStarForward = new BitSetIndex();
+    private final BitSetIndex affectsStarBackward = new BitSetIndex();
+    private boolean lazyAffects;
+    private boolean affectsComputed;
+
+    private final Map<RelationshipType, TransitiveClosure> closureCache = new EnumMap<>(RelationshipType.class);
+
+    private boolean frozen;
+    private BitSet callStmts;
+    private final Map<EntityType, int[]> stmtDomains = new EnumMap<>(EntityType.class);
+    private int[] procedureIds;
+    private int[] variableIds;
+    private int[] constantIds;
+    private Set<String> allConstants;
+
+
+    // Ends extraction: call statements get their callees' uses folded in and the statement arrays
+    // are trimmed. String-keyed getters then return read-only views that decode the id indexes
+    // while they are read instead of fresh copies. Memoized lazy relations and closures still
+    // fill in afterwards.
+    public void freeze() {
+        if (frozen) return;
+        int size = maxStmt + 1;
+        stmtTypes = Arrays.copyOf(stmtTypes, size);
+        parentOf = Arrays.copyOf(parentOf, size);
+        subtreeEnd = Arrays.copyOf(subtreeEnd, size);
+        followsNext = Arrays.copyOf(followsNext, size);
+        followsPrev = Arrays.copyOf(followsPrev, size);
+        stmtListOf = Arrays.copyOf(stmtListOf, size);
+        stmtListPos = Arrays.copyOf(stmtListPos, size);
+        callStmtProc = Arrays.copyOf(callStmtProc, size);
+        assignRhs = Arrays.copyOf(assignRhs, size);
+        procFirst = Arrays.copyOf(procFirst, procedureTable.size());
+        procLast = Arrays.copyOf(procLast, procedureTable.size());
+        rhsHashIndex.trim();
+        subtreeHashIndex.trim();
+
+        for (EntityType type : List.of(EntityType.STMT, EntityType.ASSIGN, EntityType.WHILE, EntityType.IF, EntityType.CALL)) {
+            stmtDomains.put(type, getStmtsOfType(type));
+        }
+        procedureIds = getProcedureIds();
+        variableIds = getVariableIds();
+        constantIds = getConstantIds();
+        BitSet constants = new BitSet();
+        constants.set(0, constantTable.size());
+        allConstants = new NameSetView(constants, constantTable);
+
+        callStmts = new BitSet();
+        for (int stmt = 1; stmt < size; stmt++) {
+            if (callStmtProc[stmt] != 0) callStmts.set(stmt);
+        }
+        frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    // Sorted statement numbers of one type (STMT for all of them) and sorted entity ids; a frozen
+    // PKB hands out the arrays built by freeze(), before that they are computed per call.
+    int[] getStmtsOfType(EntityType type) {
+        int[] domain = stmtDomains.get(type);
+        if (domain != null) return domain;
+        return stmts.stream().filter(s -> type == EntityType.STMT || getEntityType(s) == type).toArray();
+    }
+
+    int[] getProcedureIds() {
+        return procedureIds != null ? procedureIds : procedures.stream().toArray();
+    }
+
+    int[] getVariableIds() {
+        return variableIds != null ? variableIds : variables.stream().toArray();
+    }
+
+    int[] getConstantIds() {
+        return constantIds != null ? constantIds : IntStream.range(0, constantTable.size()).toArray();
+    }
+
+    private void checkMutable() {
+        if (frozen) throw new IllegalStateException("PKB is frozen");
+    }
+
+    private static Set<String> nameView(BitSet ids, SymbolTable table) {
+        return ids == null ? Set.of() : new NameSetView(ids, table);
+    }
+
+    private static Map<Integer, Set<String>> stmtIndexView(BitSetIndex index, SymbolTable values) {
+        return new NameIndexView<>(index, Integer::valueOf, key -> key instanceof Integer stmt ? stmt : -1, values);
+    }
+
+    private Map<String, Set<String>> procIndexView(BitSetIndex index, SymbolTable values) {
+        return new NameIndexView<>(index, procedureTable::nameOf,
+                key -> key instanceof String proc ? procedureTable.idOf(proc) : -1, values);
+    }
+
+    public void addAffects(int from, int to) {
+        checkMutable();
+        affectsMap.add(from, to);
+        affectedByMap.add(to, from);
+        closureCache.remove(RelationshipType.AFFECTS_STAR);
+        affectsStarForward.clear();
+        affectsStarBackward.clear();
+    }
+    public Map<Integer, Set<Integer>> getAffectsMap() {
+        computeAffects();
+        Map<Integer, Set<Integer>> result = new HashMap<>();
+        for (int stmt = 1; stmt <= maxStmt; stmt++) {
+            BitSet affected = affectedIds(stmt);
+            if (affected != null && !affected.isEmpty()) result.put(stmt, new HashSet<>(new BitSetView(affected)));
+        }
+        return result;
+    }
+
+    // In lazy mode extraction skips Affects; each statement's forward or backward Affects set
+    // is searched for on first request and memoized in the same maps eager extraction fills.
+    public void setLazyAffects(boolean lazy) {
+        checkMutable();
+        this.lazyAffects = lazy;
+    }
+
+    public boolean isLazyAffects() {
+        return lazyAffects;
+    }
+
+    // Fills the complete Affects maps with one reaching-definitions pass per procedure. Eager
+    // extraction calls it up front; lazy mode calls it once all pairs or the closure are needed,
+    // which is cheaper than searching from every assignment separately.
+    public void computeAffects() {
+        if (affectsComputed) return;
+        for (int[] range : procedureRanges()) computeAffects(range[0], range[1]);
+        affectsComputed = true;
+    }
+
+    // Reaching definitions over one procedure's CFG: every assignment is a definition, an
+    // assignment kills the other definitions of its variable and a call kills the definitions
+    // of everything it modifies. Affects(d, u) holds when d reaches u and u uses d's variable.
+    private void computeAffects(int first, int last) {
+        int size = last - first + 1;
+        int[] defStmt = new int[size];
+        int[] defIndex = new int[size];
+        Arrays.fill(defIndex, -1);
+        Map<Integer, BitSet> defsOfVar = new HashMap<>();
+        int defCount = 0;
+        for (int stmt = first; stmt <= last; stmt++) {
+            if (getEntityType(stmt) != EntityType.ASSIGN) continue;
+            BitSet mods = modifiesStmt.get(stmt);
+            if (mods == null || mods.cardinality() != 1) continue;
+            defStmt[defCount] = stmt;
+            defIndex[stmt - first] = defCount;
+            defsOfVar.computeIfAbsent(mods.nextSetBit(0), k -> new BitSet()).set(defCount);
+            defCount++;
+        }
+        if (defCount == 0) return;
+
+        BitSet[] kill = new BitSet[size];
+        for (int stmt = first; stmt <= last; stmt++) {
+            EntityType type = getEntityType(stmt);
+            if (type != EntityType.ASSIGN && type != EntityType.CALL) continue;
+            BitSet mods = modifiesStmt.get(stmt);
+            if (mods == null) continue;
+            BitSet killed = new BitSet();
+            for (int v = mods.nextSetBit(0); v >= 0; v = mods.nextSetBit(v + 1)) {
+                BitSet defs = defsOfVar.get(v);
+                if (defs != null) killed.or(defs);
+            }
+            kill[stmt - first] = killed;
+        }
+
+        BitSet[] in = new BitSet[size];
+        BitSet[] out = new BitSet[size];
+        for (int stmt = first; stmt <= last; stmt++) {
+            in[stmt - first] = new BitSet();
+            out[stmt - first] = new BitSet();
+        }
+        Deque<Integer> worklist = new ArrayDeque<>();
+        boolean[] queued = new boolean[size];
+        for (int stmt = first; stmt <= last; stmt++) {
+            worklist.add(stmt);
+            queued[stmt - first] = true;
+        }
+        while (!worklist.isEmpty()) {
+            int stmt = worklist.poll();
+            int i = stmt - first;
+            queued[i] = false;
+            BitSet newIn = new BitSet();
+            for (int p : getPrev(stmt)) newIn.or(out[p - first]);
+            BitSet newOut = (BitSet) newIn.clone();
+            if (kill[i] != null) newOut.andNot(kill[i]);
+            if (defIndex[i] >= 0) newOut.set(defIndex[i]);
+            in[i] = newIn;
+            if (newOut.equals(out[i])) continue;
+            out[i] = newOut;
+            for (int n : getNext(stmt)) {
+                if (!queued[n - first]) {
+                    queued[n - first] = true;
+                    worklist.add(n);
+                }
+            }
+        }
+
+        for (int stmt = first; stmt <= last; stmt++) {
+            int i = stmt - first;
+            if (defIndex[i] < 0) continue;
+            BitSet uses = usesStmt.get(stmt);
+            if (uses == null) continue;
+            for (int v = uses.nextSetBit(0); v >= 0; v = uses.nextSetBit(v + 1)) {
+                BitSet defs = defsOfVar.get(v);
+                if (defs == null) continue;
+                BitSet reaching = (BitSet) defs.clone();
+                reaching.and(in[i]);
+                for (int d = reaching.nextSetBit(0); d >= 0; d = reaching.nextSetBit(d + 1)) {
+                    affectsMap.add(defStmt[d], stmt);
+                    affectedByMap.add(stmt, defStmt[d]);
+                }
+            }
+        }
+    }
+
+    public Set<Integer> getAffected(int stmt) {
+        BitSet affected = affectedIds(stmt);
+        return affected == null ? Set.of() : new BitSetView(affected);
+    }
+
+    public Set<Integer> getAffecting(int stmt) {
+        BitSet affecting = affectingIds(stmt);
+        return affecting == null ? Set.of() : new BitSetView(affecting);
+    }
 
-    private final Map<Integer, Integer> followsMap = new HashMap<>();
-    private final Map<Integer, Set<Integer>> followsStarCache = new HashMap<>();
-    private final Map<Integer, Integer> followedByMap = new HashMap<>();
-    private final Map<Integer, Set<Integer>> followedByStarCache = new HashMap<>();
+    public boolean isAffects(int from, int to) {
+        if (lazyAffects && !affectsComputed && !affectsMap.hasKey(from) && affectedByMap.hasKey(to)) return affectedByMap.contains(to, from);
+        BitSet affected = affectedIds(from);
+        return affected != null && affected.get(to);
+    }
 
-    private final Map<Integer, Set<String>> modifiesStmt = new HashMap<>();
-    private final Map<String, Set<String>> modifiesProc = new HashMap<>();
+    public Set<Integer> getAffectedStar(int stmt) {
+        return new BitSetView(affectsStar(stmt, affectsStarForward, this::affectedIds));
+    }
 
-    private final Map<Integer, Set<String>> usesStmt = new HashMap<>();
-    private final Map<String, Set<String>> usesProc = new HashMap<>();
+    public Set<Integer> getAffectingStar(int stmt) {
+        return new BitSetView(affectsStar(stmt, affectsStarBackward, this::affectingIds));
+    }
 
-    private final Map<Integer, EntityType> entitiyTypeMap = new HashMap<>();
-    private final Set<String> procedures = new HashSet<>();
-    private final Set<String> variables = new HashSet<>();
+    public boolean isAffectsStar(int from, int to) {
+        return affectsStar(from, affectsStarForward, this::affectedIds).get(to);
+    }
 
-    private final Map<String, Set<String>> callsMap = new HashMap<>();
-    private final Map<String, Set<String>> callsStarCache = new HashMap<>();
+    private BitSet affectedIds(int stmt) {
+        if (!lazyAffects || affectsComputed || affectsMap.hasKey(stmt)) return affectsMap.get(stmt);
+        if (getEntityType(stmt) != EntityType.ASSIGN) return null;
+        BitSet affected = affectsMap.ensureKey(stmt);
+        BitSet mods = getModifiedVarIds(stmt);
+        if (mods == null || mods.cardinality() != 1) return affected;
+        int var = mods.nextSetBit(0);
+        BitSet seen = new BitSet();
+        Deque<Integer> queue = new ArrayDeque<>(getNext(stmt));
+        while (!queue.isEmpty()) {
+            int cur = queue.poll();
+            if (seen.get(cur)) continue;
+            seen.set(cur);
+            EntityType type = getEntityType(cur);
+            if (type == EntityType.ASSIGN && usesStmt.contains(cur, var)) affected.set(cur);
+            if ((type == EntityType.ASSIGN || type == EntityType.CALL) && modifiesStmt.contains(cur, var)) continue;
+            queue.addAll(getNext(cur));
+        }
+        return affected;
+    }
 
-    private final Map<Integer, String> callStmtToProc = new HashMap<>();
+    private BitSet affectingIds(int stmt) {
+        if (!lazyAffects || affectsComputed || affectedByMap.hasKey(stmt)) return affectedByMap.get(stmt);
+        if (getEntityType(stmt) != EntityType.ASSIGN) return null;
+        BitSet affecting = affectedByMap.ensureKey(stmt);
+        BitSet uses = usesStmt.get(stmt);
+        if (uses == null) return affecting;
+        for (int var = uses.nextSetBit(0); var >= 0; var = uses.nextSetBit(var + 1)) {
+            BitSet seen = new BitSet();
+            Deque<Integer> queue = new ArrayDeque<>(getPrev(stmt));
+            while (!queue.isEmpty()) {
+                int cur = queue.poll();
+                if (seen.get(cur)) continue;
+                seen.set(cur);
+                EntityType type = getEntityType(cur);
+                if ((type == EntityType.ASSIGN || type == EntityType.CALL) && modifiesStmt.contains(cur, var)) {
+                    BitSet mods = modifiesStmt.get(cur);
+                    if (type == EntityType.ASSIGN && mods.cardinality() == 1) affecting.set(cur);
+                    continue;
+                }
+                queue.addAll(getPrev(cur));
+            }
+        }
+        return affecting;
+    }
+
+    private BitSet affectsStar(int start, BitSetIndex memo, IntFunction<BitSet> step) {
+        if (memo.hasKey(start)) return memo.get(start);
+        TransitiveClosure closure = closureCache.get(RelationshipType.AFFECTS_STAR);
+        BitSet reached = memo.ensureKey(start);
+        if (closure != null) {
+            reached.or(memo == affectsStarForward ? closure.successors(start) : closure.predecessors(start));
+            return reached;
+        }
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            BitSet next = step.apply(queue.poll());
+            if (next == null) continue;
+            for (int n = next.nextSetBit(0); n >= 0; n = next.nextSetBit(n + 1)) {
+                if (!reached.get(n)) {
+                    reached.set(n);
+                    queue.add(n);
+                }
+            }
+        }
+        return reached;
+    }
+    // Procedures are numbered contiguously in declaration order, so each one owns the
+    // statement range [first, last] and a statement's procedure is a binary search away.
+    // procFirst/procLast hold the same ranges by procedure id, 0 where a procedure has none.
+    public void setProcedureRange(String proc, int first, int last) {
+        checkMutable();
+        if (first > last) return;
+        if (!procRanges.isEmpty() && first <= procRanges.get(procRanges.size() - 1)[1]) {
+            throw new IllegalArgumentException("Procedure ranges must be added in statement order: " + proc);
+        }
+        ensureStmtCapacity(last);
+        int procId = procedureTable.intern(proc);
+        procRanges.add(new int[]{first, last, procId});
+        if (procId >= procFirst.length) {
+            int size = Math.max(procFirst.length * 2, procId + 1);
+            procFirst = Arrays.copyOf(procFirst, size);
+            procLast = Arrays.copyOf(procLast, size);
+        }
+        procFirst[procId] = first;
+        procLast[procId] = last;
+    }
 
-    private final Map<String, Set<Integer>> varToStmtsUsingIt = new HashMap<>();
+    public int[] getProcedureRange(String proc) {
+        int procId = procedureTable.idOf(proc);
+        int first = getProcedureFirst(procId);
+        return first == 0 ? null : new int[]{first, getProcedureLast(procId)};
+    }
 
-    private final Map<Integer, Set<Integer>> nextMap = new HashMap<>();
-    private final Map<Integer, Set<Integer>> nextStarMap = new HashMap<>();
+    int getProcedureFirst(int procId) {
+        return procId >= 0 && procId < procFirst.length ? procFirst[procId] : 0;
+    }
 
-    private final Map<String, Set<Integer>> assignLhsToStmts = new HashMap<>();
+    int getProcedureLast(int procId) {
+        return procId >= 0 && procId < procLast.length ? procLast[procId] : 0;
+    }
 
-    private final Map<Integer, Set<String>> ifControlVars = new HashMap<>();
-    private final Set<String> constants = new HashSet<>();
+    public String getProcedureOfStmt(int stmt) {
+        int[] range = procRangeOf(stmt);
+        return range == null ? null : procedureTable.nameOf(range[2]);
+    }
 
-    private final Map<Integer, Set<Integer>> affectsMap = new HashMap<>();
-    private final Map<Integer, String> stmtToProc = new HashMap<>();
+    private int[] procRangeOf(int stmt) {
+        int low = 0;
+        int high = procRanges.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int[] range = procRanges.get(mid);
+            if (stmt < range[0]) high = mid - 1;
+            else if (stmt > range[1]) low = mid + 1;
+            else return range;
+        }
+        return null;
+    }
 
-    public void addAffects(int from, int to) { affectsMap.computeIfAbsent(from,k->new HashSet<>()).add(to); }
-    public Map<Integer, Set<Integer>> getAffectsMap() { return new HashMap<>(affectsMap); }
-    public Map<String, Set<String>> getAffectsStringMap() {
-        Map<String, Set<String>> out = new HashMap<>();
-        for (var e : affectsMap.entrySet()) {
-            out.put(String.valueOf(e.getKey()), e.getValue().stream().map(String::valueOf).collect(Collectors.toSet()));
+    private void ensureStmtCapacity(int stmt) {
+        if (stmt <= 0) throw new IllegalArgumentException("Statement numbers start at 1: " + stmt);
+        if (stmt >= stmtTypes.length) {
+            int size = Math.max(stmtTypes.length * 2, stmt + 1);
+            stmtTypes = Arrays.copyOf(stmtTypes, size);
+            parentOf = Arrays.copyOf(parentOf, size);
+            subtreeEnd = Arrays.copyOf(subtreeEnd, size);
+            followsNext = Arrays.copyOf(followsNext, size);
+            followsPrev = Arrays.copyOf(followsPrev, size);
+            stmtListOf = Arrays.copyOf(stmtListOf, size);
+            stmtListPos = Arrays.copyOf(stmtListPos, size);
+            callStmtProc = Arrays.copyOf(callStmtProc, size);
+            assignRhs = Arrays.copyOf(assignRhs, size);
         }
-        return out;
+        maxStmt = Math.max(maxStmt, stmt);
+    }
+
+    private int procRef(String proc) {
+        return proc == null ? 0 : procedureTable.intern(proc) + 1;
+    }
+
+    private String procName(int ref) {
+        return ref == 0 ? null : procedureTable.nameOf(ref - 1);
+    }
+
+    SymbolTable getVariableTable() { return variableTable; }
+    SymbolTable getProcedureTable() { return procedureTable; }
+    SymbolTable getConstantTable() { return constantTable; }
+
+    private int parentOf(int stmt) {
+        return stmt > 0 && stmt < parentOf.length ? parentOf[stmt] : 0;
+    }
+
+    int getParent(int stmt) {
+        return parentOf(stmt);
     }
-    public void setStmtProcedure(int stmt, String proc) { stmtToProc.put(stmt, proc); }
-    public String getProcedureOfStmt(int stmt) { return stmtToProc.get(stmt); }
 
-    public void addConstant(String value){ constants.add(value); }
+    int getFollowsPredecessor(int stmt) {
+        return stmt > 0 && stmt < followsPrev.length ? followsPrev[stmt] : 0;
+    }
+
+    int getFollowsSuccessor(int stmt) {
+        return stmt > 0 && stmt < followsNext.length ? followsNext[stmt] : 0;
+    }
+
+    BitSet getChildIds(int stmt) {
+        return childrenMap.get(stmt);
+    }
+
+    List<int[]> getStmtLists() {
+        return Collections.unmodifiableList(stmtLists);
+    }
+
+    int getMaxStmt() {
+        return maxStmt;
+    }
+
+    public void addConstant(String value){
+        checkMutable();
+        constantTable.intern(value);
+    }
 
 
     public boolean containsSubtree(TNode root, TNode pattern) {
@@ -69,51 +501,240 @@ public class PKB {
         return false;
     }
 
-public Set<String> getAllConstants() { return new HashSet<>(constants); }
+    public Set<String> getAllConstants() {
+        if (frozen) return allConstants;
+        Set<String> result = new HashSet<>();
+        for (int id = 0; id < constantTable.size(); id++) result.add(constantTable.nameOf(id));
+        return result;
+    }
     public void setAssignLhs(int stmt, String var) {
-        assignLhsToStmts.computeIfAbsent(var, k -> new HashSet<>()).add(stmt);
+        checkMutable();
+        assignLhsToStmts.add(variableTable.intern(var), stmt);
     }
     public Set<Integer> getAssignsWithLhs(String var) {
-        return assignLhsToStmts.getOrDefault(var, Set.of());
+        BitSet set = assignLhsToStmts.get(variableTable.idOf(var));
+        return set == null ? Set.of() : new BitSetView(set);
     }
 
-    private final Map<Integer, TNode> assignRhsTree = new HashMap<>();
+    // Assignment RHS in postfix: operators as negative codes, variables as id * 2 and constants
+    // as id * 2 + 1. Every subtree is the contiguous span that ends at its root.
+    private static final int PLUS_CODE = -1;
+    private static final int MINUS_CODE = -2;
+    private static final int TIMES_CODE = -3;
+    private int[][] assignRhs = new int[64][];
+    // Structural hash of a whole RHS / of any operator subtree of an RHS -> assignments with such
+    // an expression. Single names are left to the posting lists below.
+    private final PostingLists rhsHashIndex = new PostingLists();
+    private final PostingLists subtreeHashIndex = new PostingLists();
+    // Variable / constant id -> assignments whose RHS mentions it.
+    private final BitSetIndex rhsVarToAssigns = new BitSetIndex();
+    private final BitSetIndex rhsConstantToAssigns = new BitSetIndex();
+
     public void setAssignRhsTree(int stmt, TNode exprRoot) {
-        assignRhsTree.put(stmt, exprRoot);
+        checkMutable();
+        ensureStmtCapacity(stmt);
+        if (exprRoot == null) {
+            assignRhs[stmt] = null;
+            return;
+        }
+        int[] postfix = toPostfix(exprRoot, true);
+        assignRhs[stmt] = postfix;
+        long[] hashes = spanHashes(postfix);
+        for (int i = 0; i < postfix.length; i++) {
+            if (postfix[i] < 0) subtreeHashIndex.add(hashes[i], stmt);
+        }
+        rhsHashIndex.add(hashes[hashes.length - 1], stmt);
     }
+
+    // Rebuilt from the postfix form; the parsed tree itself is not kept.
     public TNode getAssignRhsTree(int stmt) {
-        return assignRhsTree.get(stmt);
+        int[] postfix = stmt > 0 && stmt < assignRhs.length ? assignRhs[stmt] : null;
+        if (postfix == null) return null;
+        Deque<TNode> stack = new ArrayDeque<>();
+        for (int code : postfix) {
+            TNode node;
+            if (code >= 0) {
+                node = new TNode((code & 1) == 0 ? EntityType.VARIABLE : EntityType.CONSTANT);
+                node.setAttr(((code & 1) == 0 ? variableTable : constantTable).nameOf(code >>> 1));
+            } else {
+                node = new TNode(code == PLUS_CODE ? EntityType.PLUS : code == MINUS_CODE ? EntityType.MINUS : EntityType.TIMES);
+                TNode right = stack.pop();
+                TNode left = stack.pop();
+                node.setFirstChild(left);
+                left.setRightSibling(right);
+            }
+            stack.push(node);
+        }
+        return stack.pop();
+    }
+
+    public void setAssignRhsVar(int stmt, String var) {
+        checkMutable();
+        rhsVarToAssigns.add(variableTable.intern(var), stmt);
+    }
+
+    public void setAssignRhsConstant(int stmt, String value) {
+        checkMutable();
+        rhsConstantToAssigns.add(constantTable.intern(value), stmt);
+    }
+
+    public Set<Integer> getAssignsMatching(TNode pattern, boolean subexpression) {
+        return new BitSetView(assignsMatching(pattern, subexpression));
+    }
+
+    // Hash lookup of the candidate assignments, verified over the postfix arrays. A contiguous
+    // occurrence of a well-formed postfix pattern is always a whole subtree of the RHS, so the
+    // subexpression check is a plain linear substring search.
+    BitSet assignsMatching(TNode pattern, boolean subexpression) {
+        BitSet result = new BitSet();
+        int[] needle = pattern == null ? null : toPostfix(pattern, false);
+        if (needle == null) return result;
+        BitSet candidates = assignsMentioningAll(needle);
+        if (subexpression && needle.length == 1) return candidates;
+        long[] hashes = spanHashes(needle);
+        int[] failure = subexpression ? failureFunction(needle) : null;
+        for (int stmt : (subexpression ? subtreeHashIndex : rhsHashIndex).get(hashes[hashes.length - 1])) {
+            if (!candidates.get(stmt)) continue;
+            int[] rhs = assignRhs[stmt];
+            if (subexpression ? occursIn(rhs, needle, failure) : Arrays.equals(rhs, needle)) result.set(stmt);
+        }
+        return result;
+    }
+
+    // Postings held by the expression hash indexes (about one per operator of every RHS).
+    long patternIndexSize() {
+        return rhsHashIndex.postingCount() + subtreeHashIndex.postingCount();
+    }
+
+    // Intersection of the posting lists of every variable and constant in the pattern.
+    private BitSet assignsMentioningAll(int[] postfix) {
+        BitSet result = null;
+        for (int code : postfix) {
+            if (code < 0) continue;
+            BitSet postings = ((code & 1) == 0 ? rhsVarToAssigns : rhsConstantToAssigns).get(code >>> 1);
+            if (postings == null) return new BitSet();
+            if (result == null) result = (BitSet) postings.clone();
+            else result.and(postings);
+        }
+        return result != null ? result : new BitSet();
+    }
+
+    // Postfix codes of an expression tree. Without interning, an unknown name yields null: no
+    // stored expression can contain it.
+    private int[] toPostfix(TNode root, boolean intern) {
+        List<Integer> codes = new ArrayList<>();
+        Deque<TNode> stack = new ArrayDeque<>();
+        Deque<TNode> output = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            TNode node = stack.pop();
+            output.push(node);
+            for (TNode child = node.getFirstChild(); child != null; child = child.getRightSibling()) stack.push(child);
+        }
+        for (TNode node : output) {
+            int code;
+            switch (node.getType()) {
+                case PLUS -> code = PLUS_CODE;
+                case MINUS -> code = MINUS_CODE;
+                case TIMES -> code = TIMES_CODE;
+                case VARIABLE, CONSTANT -> {
+                    boolean variable = node.getType() == EntityType.VARIABLE;
+                    SymbolTable table = variable ? variableTable : constantTable;
+                    int id = intern ? table.intern(node.getAttr()) : table.idOf(node.getAttr());
+                    if (id < 0) return null;
+                    code = id << 1 | (variable ? 0 : 1);
+                }
+                default -> throw new IllegalArgumentException("Unexpected expression node: " + node.getType());
+            }
+            codes.add(code);
+        }
+        return codes.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Hash of the subtree ending at every postfix position, computed with an operand stack.
+    private static long[] spanHashes(int[] postfix) {
+        long[] hashes = new long[postfix.length];
+        long[] stack = new long[postfix.length];
+        int top = 0;
+        for (int i = 0; i < postfix.length; i++) {
+            long hash = postfix[i] * 0x9E3779B97F4A7C15L;
+            if (postfix[i] < 0) {
+                long right = stack[--top];
+                long left = stack[--top];
+                hash = (hash + left) * 31 + right;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xFF51AFD7ED558CCDL;
+            hash ^= hash >>> 33;
+            stack[top++] = hash;
+            hashes[i] = hash;
+        }
+        return hashes;
+    }
+
+    private static int[] failureFunction(int[] needle) {
+        int[] failure = new int[needle.length];
+        for (int i = 1, k = 0; i < needle.length; i++) {
+            while (k > 0 && needle[i] != needle[k]) k = failure[k - 1];
+            if (needle[i] == needle[k]) k++;
+            failure[i] = k;
+        }
+        return failure;
+    }
+
+    private static boolean occursIn(int[] haystack, int[] needle, int[] failure) {
+        for (int i = 0, k = 0; i < haystack.length; i++) {
+            while (k > 0 && haystack[i] != needle[k]) k = failure[k - 1];
+            if (haystack[i] == needle[k]) k++;
+            if (k == needle.length) return true;
+        }
+        return false;
     }
 
-    private final Map<Integer, Set<String>> whileControlVars = new HashMap<>();
+    private final BitSetIndex whileControlVars = new BitSetIndex();
+    private final BitSetIndex varToWhiles = new BitSetIndex();
 
     public void setWhileControlVars(int stmt, Set<String> vars) {
-        whileControlVars.put(stmt, vars);
+        checkMutable();
+        BitSet ids = whileControlVars.ensureKey(stmt);
+        for (String v : vars) {
+            int id = variableTable.intern(v);
+            ids.set(id);
+            varToWhiles.add(id, stmt);
+        }
+    }
+
+    public Set<Integer> getWhilesWithControlVar(String var) {
+        BitSet set = varToWhiles.get(variableTable.idOf(var));
+        return set == null ? Set.of() : new BitSetView(set);
     }
 
 
     public void setCallStmt(int stmt, String proc) {
-        callStmtToProc.put(stmt, proc);
+        checkMutable();
+        ensureStmtCapacity(stmt);
+        callStmtProc[stmt] = procRef(proc);
     }
 
     public String getCalledProcByStmt(int stmt) {
-        return callStmtToProc.get(stmt);
+        return stmt > 0 && stmt < callStmtProc.length ? procName(callStmtProc[stmt]) : null;
     }
 
     public EntityType getEntityType(String entityIdentifier) {
         try {
             int stmtNum = Integer.parseInt(entityIdentifier);
-            EntityType type = entitiyTypeMap.get(stmtNum);
+            EntityType type = getEntityType(stmtNum);
             if (type != null) {
                 return type;
             }
         } catch (NumberFormatException ignored) { }
 
-        if (variables.contains(entityIdentifier)) {
+        int varId = variableTable.idOf(entityIdentifier);
+        if (varId >= 0 && variables.get(varId)) {
             return EntityType.VARIABLE;
         }
 
-        if (modifiesProc.containsKey(entityIdentifier)) {
+        if (modifiesProc.hasKey(procedureTable.idOf(entityIdentifier))) {
             return EntityType.PROCEDURE;
         }
 
@@ -121,200 +742,584 @@ public Set<String> getAllConstants() { return new HashSet<>(constants); }
     }
 
     public EntityType getEntityType(int stmt) {
-        return entitiyTypeMap.get(stmt);
+        if (stmt <= 0 || stmt >= stmtTypes.length || stmtTypes[stmt] == 0) return null;
+        return ENTITY_TYPES[stmtTypes[stmt] - 1];
     }
 
     public void setParent(int parent, int child) {
-        parentMap.put(child, parent);
-        childrenMap.computeIfAbsent(parent, k -> new HashSet<>()).add(child);
+        checkMutable();
+        ensureStmtCapacity(Math.max(parent, child));
+        parentOf[child] = parent;
+        childrenMap.add(parent, child);
     }
 
 
     public Map<Integer, Integer> getParentMap() {
-        return parentMap;
+        return new IntArrayMap(() -> parentOf, () -> maxStmt);
+    }
+
+    // Statements are numbered in pre-order, so a container's descendants are exactly
+    // the interval (container, lastDescendant]; Parent* becomes an interval check.
+    public void setSubtreeEnd(int container, int lastDescendant) {
+        checkMutable();
+        ensureStmtCapacity(Math.max(container, lastDescendant));
+        subtreeEnd[container] = lastDescendant;
+        closureCache.remove(RelationshipType.PARENT_STAR);
+    }
+
+    public int getLastDescendant(int stmt) {
+        if (stmt <= 0 || stmt >= subtreeEnd.length) return stmt;
+        return Math.max(stmt, subtreeEnd[stmt]);
+    }
+
+    public boolean isParentStar(int ancestor, int descendant) {
+        return ancestor < descendant && descendant <= getLastDescendant(ancestor);
+    }
+
+    public Set<Integer> getDescendants(int stmt) {
+        BitSet range = new BitSet();
+        range.set(stmt + 1, getLastDescendant(stmt) + 1);
+        return new BitSetView(range);
+    }
+
+    public Set<Integer> getAncestors(int stmt) {
+        Set<Integer> result = new LinkedHashSet<>();
+        for (int current = parentOf(stmt); current != 0; current = parentOf(current)) result.add(current);
+        return result;
     }
 
 
 
 
     public void setIfControlVars(int stmt, Set<String> vars){
-        ifControlVars.put(stmt, vars);
+        checkMutable();
+        BitSet ids = ifControlVars.ensureKey(stmt);
+        for (String v : vars) {
+            int id = variableTable.intern(v);
+            ids.set(id);
+            varToIfs.add(id, stmt);
+        }
+    }
+
+    public Set<Integer> getIfsWithControlVar(String var) {
+        BitSet set = varToIfs.get(variableTable.idOf(var));
+        return set == null ? Set.of() : new BitSetView(set);
     }
 
     public void setFollows(int predecessor, int successor) {
-        followsMap.put(predecessor, successor);
-        followedByMap.put(successor, predecessor);
-        followsStarCache.clear();
-        followedByStarCache.clear();
+        checkMutable();
+        ensureStmtCapacity(Math.max(predecessor, successor));
+        followsNext[predecessor] = successor;
+        followsPrev[successor] = predecessor;
     }
 
     public Map<Integer, Integer> getAllFollows() {
-        return followsMap;
+        return new IntArrayMap(() -> followsNext, () -> maxStmt);
+    }
+
+    // A stmtLst is a linear Follows chain: Follows*(a, b) holds iff both sit in the same
+    // list and a comes first, and followers/predecessors are slices of that list.
+    public void addStmtList(int[] members) {
+        checkMutable();
+        stmtLists.add(members);
+        int listRef = stmtLists.size();
+        for (int pos = 0; pos < members.length; pos++) {
+            ensureStmtCapacity(members[pos]);
+            stmtListOf[members[pos]] = listRef;
+            stmtListPos[members[pos]] = pos;
+        }
+        closureCache.remove(RelationshipType.FOLLOWS_STAR);
+    }
+
+    public boolean isFollowsStar(int predecessor, int successor) {
+        int list = stmtListRef(predecessor);
+        return list != 0 && list == stmtListRef(successor) && stmtListPos[predecessor] < stmtListPos[successor];
+    }
+
+    public int[] getFollowersStar(int stmt) {
+        int list = stmtListRef(stmt);
+        if (list == 0) return new int[0];
+        int[] members = stmtLists.get(list - 1);
+        return Arrays.copyOfRange(members, stmtListPos[stmt] + 1, members.length);
+    }
+
+    public int[] getPredecessorsStar(int stmt) {
+        int list = stmtListRef(stmt);
+        if (list == 0) return new int[0];
+        return Arrays.copyOfRange(stmtLists.get(list - 1), 0, stmtListPos[stmt]);
+    }
+
+    private int stmtListRef(int stmt) {
+        return stmt > 0 && stmt < stmtListOf.length ? stmtListOf[stmt] : 0;
     }
 
 
 
     public void setModifiesStmt(int stmt, String var) {
-        modifiesStmt.computeIfAbsent(stmt, k -> new HashSet<>()).add(var);
+        checkMutable();
+        int varId = variableTable.intern(var);
+        modifiesStmt.add(stmt, varId);
+        varToStmtsModifyingIt.add(varId, stmt);
     }
 
     public boolean setModifiesProc(String proc, String var) {
-        if (!modifiesProc.containsKey(proc)) {
-            modifiesProc.put(proc, new HashSet<>());
-        }
-        return modifiesProc.get(proc).add(var);
+        checkMutable();
+        int procId = procedureTable.intern(proc);
+        int varId = variableTable.intern(var);
+        varToProcsModifyingIt.add(varId, procId);
+        return modifiesProc.add(procId, varId);
     }
 
     public Set<String> getModifiedByStmt(int stmt) {
-        return modifiesStmt.getOrDefault(stmt, new HashSet<>());
+        if (frozen) return nameView(modifiesStmt.get(stmt), variableTable);
+        return variableTable.namesOf(modifiesStmt.get(stmt));
     }
 
     public Map<Integer, Set<String>> getModifiedByStmtMap() {
-        return new HashMap<>(modifiesStmt);
+        if (frozen) return stmtIndexView(modifiesStmt, variableTable);
+        Map<Integer, Set<String>> result = new HashMap<>();
+        for (int stmt = 1; stmt < modifiesStmt.keyLimit(); stmt++) {
+            if (modifiesStmt.hasKey(stmt)) result.put(stmt, getModifiedByStmt(stmt));
+        }
+        return result;
     }
 
     public Set<String> getModifiedByProc(String proc) {
-        return modifiesProc.getOrDefault(proc, new HashSet<>());
+        if (frozen) return nameView(modifiesProc.get(procedureTable.idOf(proc)), variableTable);
+        return variableTable.namesOf(modifiesProc.get(procedureTable.idOf(proc)));
     }
 
     public Map<String, Set<String>> getModifiedByProcMap() {
-        return new HashMap<>(modifiesProc);
+        if (frozen) return procIndexView(modifiesProc, variableTable);
+        return decodeProcIndex(modifiesProc, variableTable);
     }
 
     public Map<Integer, Set<String>> getAllUses() {
+        if (frozen) return stmtIndexView(usesStmt, variableTable);
         Map<Integer, Set<String>> result = new HashMap<>();
-        for (var e : usesStmt.entrySet()) {
-            result.put(e.getKey(), new HashSet<>(e.getValue()));
-        }
-        for (var entry : callStmtToProc.entrySet()) {
-            int stmt = entry.getKey();
-            String proc = entry.getValue();
-            Set<String> vars = new HashSet<>();
-            vars.addAll(usesProc.getOrDefault(proc, Set.of()));
-            for (String callee : getCallsStar(proc)) {
-                vars.addAll(usesProc.getOrDefault(callee, Set.of()));
-            }
-            result.computeIfAbsent(stmt, k -> new HashSet<>()).addAll(vars);
+        for (int stmt = 1; stmt < usesStmt.keyLimit(); stmt++) {
+            if (usesStmt.hasKey(stmt)) result.put(stmt, getUsedByStmt(stmt));
         }
         return result;
     }
 
     public Set<String> getUsedByStmt(int stmt) {
-        Set<String> result = new HashSet<>(usesStmt.getOrDefault(stmt, Set.of()));
-        String proc = callStmtToProc.get(stmt);
-        if (proc != null) {
-            result.addAll(usesProc.getOrDefault(proc, Set.of()));
-            for (String callee : getCallsStar(proc)) {
-                result.addAll(usesProc.getOrDefault(callee, Set.of()));
-            }
+        if (frozen) return nameView(usesStmt.get(stmt), variableTable);
+        return variableTable.namesOf(usesStmt.get(stmt));
+    }
+
+    BitSet getModifiedVarIds(int stmt) {
+        return modifiesStmt.get(stmt);
+    }
+
+    BitSet getProcModifiedVarIds(int procId) {
+        return modifiesProc.get(procId);
+    }
+
+    BitSet getUsedVarIds(int stmt) {
+        return usesStmt.get(stmt);
+    }
+
+    BitSet getProcUsedVarIds(int procId) {
+        return usesProc.get(procId);
+    }
+
+    BitSet getStmtsModifyingIds(int varId) {
+        return varToStmtsModifyingIt.get(varId);
+    }
+
+    BitSet getProcsModifyingIds(int varId) {
+        return varToProcsModifyingIt.get(varId);
+    }
+
+    BitSet getStmtsUsingIds(int varId) {
+        return varToStmtsUsingIt.get(varId);
+    }
+
+    BitSet getProcsUsingIds(int varId) {
+        return varToProcsUsingIt.get(varId);
+    }
+
+    public Set<Integer> getStmtsModifying(String var) {
+        BitSet set = varToStmtsModifyingIt.get(variableTable.idOf(var));
+        return set == null ? Set.of() : new BitSetView(set);
+    }
+
+    public Set<String> getProceduresModifying(String var) {
+        return procedureTable.namesOf(varToProcsModifyingIt.get(variableTable.idOf(var)));
+    }
+
+    public Set<Integer> getStmtsUsing(String var) {
+        BitSet set = varToStmtsUsingIt.get(variableTable.idOf(var));
+        return set == null ? Set.of() : new BitSetView(set);
+    }
+
+    public Set<String> getProceduresUsing(String var) {
+        return procedureTable.namesOf(varToProcsUsingIt.get(variableTable.idOf(var)));
+    }
+
+    void addProcModifiedVarIds(BitSet vars, int procId) {
+        checkMutable();
+        modifiesProc.ensureKey(procId).or(vars);
+        for (int v = vars.nextSetBit(0); v >= 0; v = vars.nextSetBit(v + 1)) varToProcsModifyingIt.add(v, procId);
+    }
+
+    void addProcUsedVarIds(BitSet vars, int procId) {
+        checkMutable();
+        usesProc.ensureKey(procId).or(vars);
+        for (int v = vars.nextSetBit(0); v >= 0; v = vars.nextSetBit(v + 1)) varToProcsUsingIt.add(v, procId);
+    }
+
+    void addModifiedVarIds(int stmt, BitSet vars) {
+        checkMutable();
+        for (int current = stmt; current != 0; current = parentOf(current)) {
+            modifiesStmt.ensureKey(current).or(vars);
+            for (int v = vars.nextSetBit(0); v >= 0; v = vars.nextSetBit(v + 1)) varToStmtsModifyingIt.add(v, current);
+        }
+    }
+
+    void addUsedVarIds(int stmt, BitSet vars) {
+        checkMutable();
+        for (int current = stmt; current != 0; current = parentOf(current)) {
+            usesStmt.ensureKey(current).or(vars);
+            for (int v = vars.nextSetBit(0); v >= 0; v = vars.nextSetBit(v + 1)) varToStmtsUsingIt.add(v, current);
         }
-        return result;
     }
 
     public void setUsesStmt(int stmt, String var) {
-        usesStmt.computeIfAbsent(stmt, k -> new HashSet<>()).add(var);
-        varToStmtsUsingIt.computeIfAbsent(var, k -> new HashSet<>()).add(stmt);
+        checkMutable();
+        int varId = variableTable.intern(var);
+        usesStmt.add(stmt, varId);
+        varToStmtsUsingIt.add(varId, stmt);
     }
 
     public Map<String, Set<String>> getAllUsesProc() {
-        return usesProc;
+        if (frozen) return procIndexView(usesProc, variableTable);
+        return decodeProcIndex(usesProc, variableTable);
     }
 
     public boolean setUsesProc(String proc, String var) {
-        usesProc.computeIfAbsent(proc, k -> new HashSet<>());
-        return usesProc.get(proc).add(var);
+        checkMutable();
+        int procId = procedureTable.intern(proc);
+        int varId = variableTable.intern(var);
+        varToProcsUsingIt.add(varId, procId);
+        return usesProc.add(procId, varId);
     }
 
     public Set<String> getUsedByProc(String proc) {
-        return usesProc.getOrDefault(proc, new HashSet<>());
+        if (frozen) return nameView(usesProc.get(procedureTable.idOf(proc)), variableTable);
+        return variableTable.namesOf(usesProc.get(procedureTable.idOf(proc)));
     }
 
-    public Set<Integer> getAllCallStmts() { return new HashSet<>(callStmtToProc.keySet()); }
+    private Map<String, Set<String>> decodeProcIndex(BitSetIndex index, SymbolTable values) {
+        Map<String, Set<String>> result = new HashMap<>();
+        for (int procId = 0; procId < procedureTable.size(); procId++) {
+            if (index.hasKey(procId)) result.put(procedureTable.nameOf(procId), values.namesOf(index.get(procId)));
+        }
+        return result;
+    }
+
+    public Set<Integer> getAllCallStmts() {
+        if (frozen) return new BitSetView(callStmts);
+        Set<Integer> result = new HashSet<>();
+        for (int stmt = 1; stmt <= maxStmt && stmt < callStmtProc.length; stmt++) {
+            if (callStmtProc[stmt] != 0) result.add(stmt);
+        }
+        return result;
+    }
 
     public void propagateUsesToParent(int stmt, String var) {
-        int current = stmt;
-        while (parentMap.containsKey(current)) {
-            current = parentMap.get(current);
+        checkMutable();
+        for (int current = parentOf(stmt); current != 0; current = parentOf(current)) {
             setUsesStmt(current, var);
         }
     }
 
     public void propagateModifiesToParent(int stmt, String var) {
-        int current = stmt;
-        while (parentMap.containsKey(current)) {
-            current = parentMap.get(current);
+        checkMutable();
+        for (int current = parentOf(stmt); current != 0; current = parentOf(current)) {
             setModifiesStmt(current, var);
         }
     }
 
     public void addStmt(int stmtNumber, EntityType type) {
-        entitiyTypeMap.put(stmtNumber, type);
+        checkMutable();
+        ensureStmtCapacity(stmtNumber);
+        stmtTypes[stmtNumber] = (byte) (type.ordinal() + 1);
+        stmts.set(stmtNumber);
     }
 
     public void addProcedure(String procName) {
-        procedures.add(procName);
+        checkMutable();
+        procedures.set(procedureTable.intern(procName));
     }
 
     public void addVariable(String varName) {
-        variables.add(varName);
+        checkMutable();
+        variables.set(variableTable.intern(varName));
     }
 
 
 
     public void setCalls(String caller, String callee) {
-        callsMap.computeIfAbsent(caller, k -> new HashSet<>()).add(callee);
+        checkMutable();
+        int callerId = procedureTable.intern(caller);
+        int calleeId = procedureTable.intern(callee);
+        callsMap.add(callerId, calleeId);
+        callersMap.add(calleeId, callerId);
+        closureCache.remove(RelationshipType.CALLS_STAR);
     }
 
     public Set<String> getCallsStar(String caller) {
-        if (!callsStarCache.containsKey(caller)) {
-            Set<String> calledProcedures = new HashSet<>();
-            Deque<String> queue = new ArrayDeque<>();
-            queue.add(caller);
+        int callerId = procedureTable.idOf(caller);
+        if (frozen) return callerId < 0 || !procedures.get(callerId) ? Set.of() : nameView(callsStarIds(callerId), procedureTable);
+        return callerId < 0 ? new HashSet<>() : procedureTable.namesOf(callsStarIds(callerId));
+    }
+
+    BitSet getCalleeIds(int procId) {
+        return callsMap.get(procId);
+    }
+
+    BitSet getCallerIds(int procId) {
+        return callersMap.get(procId);
+    }
+
+    public Set<String> getCallers(String callee) {
+        return procedureTable.namesOf(callersMap.get(procedureTable.idOf(callee)));
+    }
+
+    BitSet callsStarIds(int procId) {
+        if (!callsStarCache.hasKey(procId)) {
+            BitSet calledProcedures = new BitSet();
+            Deque<Integer> queue = new ArrayDeque<>();
+            queue.add(procId);
 
             while (!queue.isEmpty()) {
-                String current = queue.poll();
-                for (String callee : callsMap.getOrDefault(current, new HashSet<>())) {
-                    if (calledProcedures.add(callee)) {
+                BitSet callees = callsMap.get(queue.poll());
+                if (callees == null) continue;
+                for (int callee = callees.nextSetBit(0); callee >= 0; callee = callees.nextSetBit(callee + 1)) {
+                    if (!calledProcedures.get(callee)) {
+                        calledProcedures.set(callee);
                         queue.add(callee);
                     }
                 }
             }
-            callsStarCache.put(caller, calledProcedures);
+            callsStarCache.ensureKey(procId).or(calledProcedures);
         }
-        return new HashSet<>(callsStarCache.get(caller));
+        return callsStarCache.get(procId);
     }
 
 
     public Map<String, Set<String>> getCallsMap() {
-        return new HashMap<>(callsMap);
+        if (frozen) return procIndexView(callsMap, procedureTable);
+        return decodeProcIndex(callsMap, procedureTable);
     }
 
     public Set<Integer> getAllStmts() {
-        return entitiyTypeMap.keySet();
+        return new BitSetView(stmts);
     }
 
 
     public Set<String> getAllProcedures() {
-        return new HashSet<>(procedures);
+        if (frozen) return new NameSetView(procedures, procedureTable);
+        return procedureTable.namesOf(procedures);
     }
     public Set<String> getAllVariables() {
-        return new HashSet<>(variables);
+        if (frozen) return new NameSetView(variables, variableTable);
+        return variableTable.namesOf(variables);
     }
 
     public Map<Integer, Set<Integer>> getAllNext() {
-        return new HashMap<>(nextMap);
+        Map<Integer, Set<Integer>> result = new HashMap<>();
+        for (int stmt = 1; stmt < nextMap.keyLimit(); stmt++) {
+            BitSet next = nextMap.get(stmt);
+            if (next != null) result.put(stmt, frozen ? new BitSetView(next) : new HashSet<>(new BitSetView(next)));
+        }
+        return frozen ? Collections.unmodifiableMap(result) : result;
     }
 
     public void addNext(int from, int to) {
-        nextMap.computeIfAbsent(from, k -> new HashSet<>()).add(to);
+        checkMutable();
+        nextMap.add(from, to);
+        prevMap.add(to, from);
+        closureCache.remove(RelationshipType.NEXT_STAR);
+        nextStarForward.clear();
+        nextStarBackward.clear();
     }
 
     public Set<Integer> getNext(int stmt) {
-        return nextMap.getOrDefault(stmt, Set.of());
+        BitSet next = nextMap.get(stmt);
+        return next == null ? Set.of() : new BitSetView(next);
+    }
+
+    public Set<Integer> getPrev(int stmt) {
+        BitSet prev = prevMap.get(stmt);
+        return prev == null ? Set.of() : new BitSetView(prev);
+    }
+
+    BitSet getNextIds(int stmt) {
+        return nextMap.get(stmt);
+    }
+
+    BitSet getPrevIds(int stmt) {
+        return prevMap.get(stmt);
+    }
+
+    // In lazy mode extraction skips the Next* closure; constant-argument queries are answered
+    // by graph search over nextMap/prevMap and the full closure is only built if asked for.
+    public void setLazyNextStar(boolean lazy) {
+        checkMutable();
+        this.lazyNextStar = lazy;
+    }
+
+    public boolean isLazyNextStar() {
+        return lazyNextStar;
+    }
+
+    public boolean isNextStar(int from, int to) {
+        TransitiveClosure closure = closureCache.get(RelationshipType.NEXT_STAR);
+        if (closure != null) return closure.contains(from, to);
+        if (nextStarForward.hasKey(from)) return nextStarForward.contains(from, to);
+        BitSet forward = new BitSet();
+        BitSet backward = new BitSet();
+        backward.set(to);
+        Deque<Integer> forwardQueue = new ArrayDeque<>();
+        Deque<Integer> backwardQueue = new ArrayDeque<>();
+        BitSet first = nextMap.get(from);
+        if (first == null) return false;
+        for (int n = first.nextSetBit(0); n >= 0; n = first.nextSetBit(n + 1)) {
+            if (backward.get(n)) return true;
+            forward.set(n);
+            forwardQueue.add(n);
+        }
+        backwardQueue.add(to);
+        while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()) {
+            if (forwardQueue.size() <= backwardQueue.size()) {
+                for (int i = forwardQueue.size(); i > 0; i--) {
+                    BitSet next = nextMap.get(forwardQueue.poll());
+                    if (next == null) continue;
+                    for (int n = next.nextSetBit(0); n >= 0; n = next.nextSetBit(n + 1)) {
+                        if (backward.get(n)) return true;
+                        if (!forward.get(n)) {
+                            forward.set(n);
+                            forwardQueue.add(n);
+                        }
+                    }
+                }
+            } else {
+                for (int i = backwardQueue.size(); i > 0; i--) {
+                    BitSet prev = prevMap.get(backwardQueue.poll());
+                    if (prev == null) continue;
+                    for (int p = prev.nextSetBit(0); p >= 0; p = prev.nextSetBit(p + 1)) {
+                        if (p == from || forward.get(p)) return true;
+                        if (!backward.get(p)) {
+                            backward.set(p);
+                            backwardQueue.add(p);
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    public Set<Integer> getNextStar(int from) {
+        return new BitSetView(reachable(from, nextStarForward, nextMap, RelationshipType.NEXT_STAR, true));
+    }
+
+    public Set<Integer> getPrevStar(int to) {
+        return new BitSetView(reachable(to, nextStarBackward, prevMap, RelationshipType.NEXT_STAR, false));
+    }
+
+    private BitSet reachable(int start, BitSetIndex memo, BitSetIndex edges,
+                             RelationshipType type, boolean forward) {
+        if (memo.hasKey(start)) return memo.get(start);
+        TransitiveClosure closure = closureCache.get(type);
+        BitSet reached = memo.ensureKey(start);
+        if (closure != null) {
+            reached.or(forward ? closure.successors(start) : closure.predecessors(start));
+            return reached;
+        }
+        Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            BitSet next = edges.get(queue.poll());
+            if (next == null) continue;
+            for (int n = next.nextSetBit(0); n >= 0; n = next.nextSetBit(n + 1)) {
+                if (!reached.get(n)) {
+                    reached.set(n);
+                    queue.add(n);
+                }
+            }
+        }
+        return reached;
     }
 
-    public void addNextStar(int from, int to) {
-        nextStarMap.computeIfAbsent(from, k -> new HashSet<>()).add(to);
+    // Star relations are computed at most once per PKB and shared by every later query;
+    // mutators drop the affected entry so extraction order does not matter.
+    TransitiveClosure getCachedClosure(RelationshipType type) {
+        return closureCache.get(type);
+    }
+
+    TransitiveClosure getClosure(RelationshipType type) {
+        TransitiveClosure closure = closureCache.get(type);
+        if (closure == null) {
+            closure = computeClosure(type);
+            closureCache.put(type, closure);
+        }
+        return closure;
+    }
+
+    private TransitiveClosure computeClosure(RelationshipType type) {
+        switch (type) {
+            case CALLS_STAR -> {
+                return TransitiveClosure.compute(procedureTable.size(), callsMap::get);
+            }
+            case PARENT_STAR -> {
+                BitSet[] rows = new BitSet[maxStmt + 1];
+                for (int stmt = 1; stmt <= maxStmt; stmt++) {
+                    int last = getLastDescendant(stmt);
+                    if (last == stmt) continue;
+                    rows[stmt] = new BitSet();
+                    rows[stmt].set(stmt + 1, last + 1);
+                }
+                return TransitiveClosure.fromRows(rows);
+            }
+            case FOLLOWS_STAR -> {
+                BitSet[] rows = new BitSet[maxStmt + 1];
+                for (int[] members : stmtLists) {
+                    for (int i = 0; i < members.length - 1; i++) {
+                        rows[members[i]] = new BitSet();
+                        for (int j = i + 1; j < members.length; j++) rows[members[i]].set(members[j]);
+                    }
+                }
+                return TransitiveClosure.fromRows(rows);
+            }
+            case NEXT_STAR -> {
+                return BitMatrixClosure.compute(maxStmt + 1, procedureRanges(), nextMap::get);
+            }
+            case AFFECTS_STAR -> {
+                computeAffects();
+                BitSet[] edges = new BitSet[maxStmt + 1];
+                for (int stmt = 1; stmt <= maxStmt; stmt++) edges[stmt] = affectedIds(stmt);
+                return BitMatrixClosure.compute(edges.length, procedureRanges(), s -> edges[s]);
+            }
+            default -> throw new IllegalArgumentException("Not a transitive relation: " + type);
+        }
+    }
+
+    // Procedure ranges plus any statements outside them, so closures still cover a PKB
+    // that was filled without setProcedureRange.
+    List<int[]> procedureRanges() {
+        List<int[]> ranges = new ArrayList<>();
+        int next = 1;
+        for (int[] range : procRanges) {
+            if (range[0] > next) ranges.add(new int[]{next, range[0] - 1});
+            ranges.add(new int[]{range[0], range[1]});
+            next = range[1] + 1;
+        }
+        if (next <= maxStmt) ranges.add(new int[]{next, maxStmt});
+        return ranges;
     }
 
 
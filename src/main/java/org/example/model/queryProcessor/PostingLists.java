@@ -0,0 +1,44 @@
+package org.example.model.queryProcessor;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Hash -> sorted statement numbers, stored as growable int arrays: a posting costs four bytes
+// rather than a bit for every statement of the program.
+final class PostingLists {
+    private static final int[] NONE = new int[0];
+
+    private static final class Postings {
+        int[] stmts = new int[2];
+        int size;
+    }
+
+    private final Map<Long, Postings> lists = new HashMap<>();
+    private long postingCount;
+
+    void add(long hash, int stmt) {
+        Postings postings = lists.computeIfAbsent(hash, k -> new Postings());
+        int at = Arrays.binarySearch(postings.stmts, 0, postings.size, stmt);
+        if (at >= 0) return;
+        at = -at - 1;
+        if (postings.size == postings.stmts.length) postings.stmts = Arrays.copyOf(postings.stmts, postings.size * 2);
+        System.arraycopy(postings.stmts, at, postings.stmts, at + 1, postings.size - at);
+        postings.stmts[at] = stmt;
+        postings.size++;
+        postingCount++;
+    }
+
+    int[] get(long hash) {
+        Postings postings = lists.get(hash);
+        return postings == null ? NONE : Arrays.copyOf(postings.stmts, postings.size);
+    }
+
+    void trim() {
+        for (Postings postings : lists.values()) postings.stmts = Arrays.copyOf(postings.stmts, postings.size);
+    }
+
+    long postingCount() {
+        return postingCount;
+    }
+}
@@ -5,6 +5,9 @@ import org.example.model.ast.TNode;
 import org.example.model.enums.EntityType;
 
 import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -13,10 +16,22 @@ public class QueryEvaluator {
     private final PKB pkb;
     private final Validator validator;
     private Set<Synonym> synonyms;
+    private final Map<String, Integer> overflowCodes = new HashMap<>();
+    private final List<String> overflowValues = new ArrayList<>();
+    private final Map<RelationshipType, ClauseEvaluator> clauseEvaluators = new EnumMap<>(RelationshipType.class);
+    private final Map<RelationshipType, ClauseEvaluator> procedureEvaluators = new EnumMap<>(RelationshipType.class);
+    private final Map<SynonymType, BitSet> typeDomains = new EnumMap<>(SynonymType.class);
+    private final UnaryOperator<ClauseEvaluator> evaluatorWrapper;
 
     public QueryEvaluator(PKB pkb) {
+        this(pkb, UnaryOperator.identity());
+    }
+
+    // The wrapper sees every clause evaluator before use (tests count the access paths taken).
+    QueryEvaluator(PKB pkb, UnaryOperator<ClauseEvaluator> evaluatorWrapper) {
         this.pkb = pkb;
         this.validator = new Validator();
+        this.evaluatorWrapper = evaluatorWrapper;
     }
 
     public String evaluateQuery(String query) {
@@ -40,349 +55,584 @@ public class QueryEvaluator {
                 .map(String::toUpperCase)
                 .collect(Collectors.toCollection(LinkedHashSet::new));
 
-        List<Map<String, String>> tuples;
+        ResultTable table;
         try {
-            tuples = processQuery(processed, rawTail, synonyms, isBoolResult);
+            table = processQuery(processed, rawTail, synonyms, isBoolResult ? Set.of() : selectCols);
         } catch (Exception e) {
             return "Error processing query";
         }
 
-        if (isBoolResult) return (tuples != null && !tuples.isEmpty()) ? "true" : "false";
-        if (tuples == null || tuples.isEmpty()) return "none";
+        if (isBoolResult) return !table.isEmpty() ? "true" : "false";
+        if (table.isEmpty()) return "none";
 
         if (selectCols.size() == 1) {
             String col = selectCols.iterator().next();
-            Set<String> vals = tuples.stream()
-                    .map(row -> row.get(col))
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toCollection(LinkedHashSet::new));
-            return vals.isEmpty() ? "none" : String.join(", ", vals);
+            if (!table.hasColumn(col)) return "none";
+            SynonymType type = getSynType(col);
+            Set<String> vals = new LinkedHashSet<>();
+            for (int code : table.column(col)) vals.add(decode(type, code));
+            return String.join(", ", vals);
         }
 
-        List<String> lines = new ArrayList<>();
-        for (Map<String, String> row : tuples) {
-            List<String> parts = selectCols.stream().map(row::get).collect(Collectors.toList());
+        List<int[]> columns = new ArrayList<>();
+        List<SynonymType> types = new ArrayList<>();
+        for (String col : selectCols) {
+            columns.add(table.hasColumn(col) ? table.column(col) : null);
+            types.add(getSynType(col));
+        }
+        Set<String> lines = new LinkedHashSet<>();
+        for (int r = 0; r < table.rowCount(); r++) {
+            List<String> parts = new ArrayList<>(columns.size());
+            for (int c = 0; c < columns.size(); c++) {
+                parts.add(columns.get(c) == null ? "null" : decode(types.get(c), columns.get(c)[r]));
+            }
             lines.add(String.join(" ", parts));
         }
-        return String.join(", ", new LinkedHashSet<>(lines));
+        return String.join(", ", lines);
+    }
+
+    private static EntityType stmtEntity(SynonymType synonymType) {
+        return switch (synonymType) {
+            case ASSIGN -> EntityType.ASSIGN;
+            case WHILE -> EntityType.WHILE;
+            case IF -> EntityType.IF;
+            case CALL -> EntityType.CALL;
+            default -> EntityType.STMT;
+        };
     }
 
-    private List<Map<String, String>> joinTuples(List<Map<String, String>> leftTuples, Set<Pair<String, String>> rightPairs, String synA, String synB) {
-        if ("_".equals(synA) && "_".equals(synB)) {
-            if (rightPairs.isEmpty()) {
-                return Collections.emptyList();
+    // Clauses are split into groups connected by shared synonyms and every group is evaluated on
+    // its own. Groups that bind no selected synonym only have to be non-empty; the others are
+    // projected onto the selected synonyms, and cross products are formed only between those
+    // projections and the domains of selected synonyms no clause mentions.
+    private ResultTable processQuery(String processed, String raw, Set<Synonym> synonyms, Set<String> selected) {
+        List<Relationship> relationships = extractRelationships(processed);
+        List<Clause> clauses = new ArrayList<>();
+        for (PatternClause pc : parsePatternClauses(raw)) clauses.add(patternClause(pc));
+        for (WithClause w : parseWithClauses(raw)) clauses.add(withClause(w));
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (Clause clause : clauses) {
+            for (String syn : clause.synonyms()) occurrences.merge(syn, 1, Integer::sum);
+        }
+        for (Relationship rel : relationships) {
+            for (String arg : List.of(rel.getFirstArg(), rel.getSecondArg())) {
+                if (synonymsContain(arg)) occurrences.merge(arg.toUpperCase(), 1, Integer::sum);
             }
-            if (leftTuples.isEmpty()) {
-                return Collections.singletonList(new HashMap<>());
+        }
+        for (int i = relationships.size() - 1; i >= 0; i--) {
+            clauses.add(0, relationshipClause(withoutLoneSynonyms(relationships.get(i), occurrences, selected)));
+        }
+        overflowCodes.clear();
+        overflowValues.clear();
+
+        List<ClauseGroup> groups = new ArrayList<>();
+        for (Clause clause : clauses) {
+            ClauseGroup merged = new ClauseGroup();
+            merged.synonyms.addAll(clause.synonyms());
+            merged.clauses.add(clause);
+            for (Iterator<ClauseGroup> it = groups.iterator(); it.hasNext(); ) {
+                ClauseGroup group = it.next();
+                if (Collections.disjoint(group.synonyms, merged.synonyms)) continue;
+                merged.synonyms.addAll(group.synonyms);
+                merged.clauses.addAll(0, group.clauses);
+                it.remove();
             }
-            return new ArrayList<>(leftTuples);
-        }
-
-        boolean sameSyn = synA.equalsIgnoreCase(synB);
-        List<Map<String, String>> out = new ArrayList<>();
-        for (Map<String, String> row : leftTuples) {
-            for (Pair<String, String> p : rightPairs) {
-                String a = p.getFirst();
-                String b = p.getSecond();
-                if (sameSyn && !a.equals(b)) continue;
-                boolean okA = (!row.containsKey(synA) || row.get(synA).equals(a));
-                boolean okB = (!row.containsKey(synB) || row.get(synB).equals(b));
-                if (!okA || !okB) continue;
-                Map<String, String> copy = new HashMap<>(row);
-                if (synonymsContain(synA)) copy.put(synA, a);
-                if (synonymsContain(synB)) copy.put(synB, b);
-                out.add(copy);
+            groups.add(merged);
+        }
+        groups.sort(Comparator.comparing(group -> Collections.min(group.clauses, CLAUSE_ORDER), CLAUSE_ORDER));
+
+        List<ResultTable> parts = new ArrayList<>();
+        Set<String> covered = new HashSet<>();
+        for (ClauseGroup group : groups) {
+            if (Collections.disjoint(group.synonyms, selected)) {
+                if (!holds(group.clauses)) return ResultTable.empty();
+                continue;
             }
+            ResultTable table = evaluateGroup(group.clauses);
+            if (table.isEmpty()) return ResultTable.empty();
+            parts.add(table.project(selected));
+            covered.addAll(group.synonyms);
         }
-        return out;
+        for (String syn : selected) {
+            if (!covered.contains(syn) && getSynType(syn) != null) parts.add(domainTable(syn));
+        }
+        ResultTable result = ResultTable.unit();
+        for (ResultTable part : parts) {
+            result = result.cross(part);
+            if (result.isEmpty()) break;
+        }
+        return result;
     }
 
-    private void filterByColumnType(String columnName, Set<String> values) {
-        SynonymType type = synonyms.stream()
-                .filter(s -> s.name().equalsIgnoreCase(columnName))
-                .map(Synonym::type)
-                .findFirst()
-                .orElse(null);
-        if (type != null) {
-            Set<EntityType> allowed = mapSynonimToEntities(type);
-            if (allowed != null) {
-                values.removeIf(v -> {
-                    try {
-                        return !allowed.contains(pkb.getEntityType(v));
-                    } catch (NumberFormatException e) {
-                        return true;
-                    }
-                });
-            }
+    // Emptiness check for a group whose bindings are not selected (every group of a BOOLEAN
+    // query). A lone relationship is answered by existence checks that stop at the first match.
+    // Otherwise the first clause is materialized and the rest run on growing slices of its rows,
+    // where bound synonyms make them per-value lookups, until one slice survives.
+    private boolean holds(List<Clause> clauses) {
+        if (clauses.size() == 1 && clauses.get(0).exists() != null) return clauses.get(0).exists().getAsBoolean();
+        List<Clause> pending = new ArrayList<>(clauses);
+        Clause first = nextClause(pending, ResultTable.unit());
+        pending.remove(first);
+        ResultTable seeds = first.step().apply(ResultTable.unit());
+        for (int start = 0, size = 1; start < seeds.rowCount(); start += size, size *= 2) {
+            int[] rows = new int[Math.min(size, seeds.rowCount() - start)];
+            for (int i = 0; i < rows.length; i++) rows[i] = start + i;
+            if (!evaluateGroup(seeds.select(rows), pending).isEmpty()) return true;
         }
+        return false;
     }
 
-    private Set<EntityType> mapSynonimToEntities(SynonymType synonymType) {
-        return switch (synonymType) {
-            case ASSIGN -> Set.of(EntityType.ASSIGN);
-            case WHILE -> Set.of(EntityType.WHILE);
-            case IF -> Set.of(EntityType.IF);
-            case CALL -> Set.of(EntityType.CALL);
-            case STMT -> Set.of(EntityType.IF, EntityType.WHILE, EntityType.CALL, EntityType.ASSIGN);
-            case VARIABLE -> Set.of(EntityType.VARIABLE);
-            case PROCEDURE -> Set.of(EntityType.PROCEDURE);
-            case PROG_LINE -> Set.of(EntityType.IF, EntityType.WHILE, EntityType.CALL, EntityType.ASSIGN);
-            default -> null;
-        };
+    private ResultTable evaluateGroup(List<Clause> clauses) {
+        return evaluateGroup(ResultTable.unit(), clauses);
     }
 
-    private List<Map<String, String>> processQuery(String processed, String raw, Set<Synonym> synonyms, boolean isBool) {
-        List<Relationship> relationships = extractRelationships(processed);
-        List<PatternClause> pcs = parsePatternClauses(raw);
-        List<WithClause> wcs = parseWithClauses(raw);
-        List<Map<String, String>> tuples = new ArrayList<>();
-        tuples.add(new HashMap<>());
-
-        if (relationships.isEmpty() && pcs.isEmpty() && !wcs.isEmpty()) {
-            LinkedHashSet<String> withSyns = new LinkedHashSet<>();
-            for (WithClause w : wcs) {
-                String[] lp = w.left().split("\\.");
-                withSyns.add(lp[0].toUpperCase());
-                String right = w.right().trim();
-                if (!right.matches("\\d+") && !right.matches("\".*\"")) {
-                    String[] rp = right.split("\\.");
-                    withSyns.add(rp[0].toUpperCase());
-                }
-            }
-            for (String syn : withSyns) {
-                Set<String> dom = domain(getSynType(syn));
-                List<Map<String, String>> expanded = new ArrayList<>();
-                for (Map<String, String> row : tuples) {
-                    for (String v : dom) {
-                        Map<String, String> copy = new HashMap<>(row);
-                        copy.put(syn, v);
-                        expanded.add(copy);
-                    }
-                }
-                tuples = expanded;
-            }
+    // Greedy plan for one group: literal filters first, then the cheapest clause by estimated
+    // result size among those sharing a synonym with the columns bound so far, so that no
+    // intermediate cross product is built inside the group.
+    private ResultTable evaluateGroup(ResultTable table, List<Clause> clauses) {
+        List<Clause> pending = new ArrayList<>(clauses);
+        while (!pending.isEmpty() && !table.isEmpty()) {
+            Clause next = nextClause(pending, table);
+            pending.remove(next);
+            table = next.step().apply(table);
         }
+        return table;
+    }
 
-        for (Relationship rel : relationships) {
-            Set<Pair<String, String>> pairs = buildPairsFor(rel, synonyms);
-            tuples = joinTuples(tuples, pairs, rel.getFirstArg().toUpperCase(), rel.getSecondArg().toUpperCase());
-            if (tuples.isEmpty()) return Collections.emptyList();
-        }
-
-        if (relationships.isEmpty() && !pcs.isEmpty()) {
-            String syn = pcs.get(0).synonym.toUpperCase();
-            SynonymType type = getSynType(syn);
-            Set<String> dom = domain(type);
-            tuples.clear();
-            for (String v : dom) {
-                Map<String, String> m = new HashMap<>();
-                m.put(syn, v);
-                tuples.add(m);
-            }
+    private static Clause nextClause(List<Clause> pending, ResultTable table) {
+        Clause next = null;
+        for (Clause clause : pending) {
+            if (!table.columns().isEmpty() && Collections.disjoint(clause.synonyms(), table.columns())) continue;
+            if (next == null || CLAUSE_ORDER.compare(clause, next) < 0) next = clause;
         }
+        return next != null ? next : Collections.min(pending, CLAUSE_ORDER);
+    }
 
-        for (PatternClause pc : pcs) {
-            Set<String> matches = buildPatternMatches(pc);
-            String syn = pc.synonym.toUpperCase();
-            tuples.removeIf(row -> {
-                String val = row.get(syn);
-                return val == null || !matches.contains(val);
-            });
-            if (tuples.isEmpty()) break;
-        }
+    private Clause relationshipClause(Relationship rel) {
+        String synA = rel.getFirstArg().toUpperCase();
+        String synB = rel.getSecondArg().toUpperCase();
+        List<String> bound = new ArrayList<>();
+        if (synonymsContain(synA)) bound.add(synA);
+        if (synonymsContain(synB) && !synB.equals(synA)) bound.add(synB);
+        return new Clause(bound, false, relationshipEstimate(rel),
+                table -> joinRelation(table, rel), () -> relationshipHolds(rel));
+    }
 
-        Set<String> boundRelPat = new HashSet<>();
-        for (Relationship r : relationships) {
-            boundRelPat.add(r.getFirstArg().toUpperCase());
-            boundRelPat.add(r.getSecondArg().toUpperCase());
+    // Joins a relationship into the rows so far. When a synonym of it is already a column and
+    // one lookup per distinct value there is expected to touch fewer pairs than the whole
+    // relation, forward/backward are called per value (an index nested-loop join) instead of
+    // listing every pair.
+    private ResultTable joinRelation(ResultTable table, Relationship rel) {
+        String left = rel.getFirstArg();
+        String right = rel.getSecondArg();
+        String colL = left.toUpperCase();
+        String colR = right.toUpperCase();
+        boolean boundL = table.hasColumn(colL);
+        boolean boundR = table.hasColumn(colR);
+        if (!boundL && !boundR) return table.join(relationTable(rel));
+        Side leftSide = leftSide(rel);
+        Side rightSide = rightSide(rel.getType());
+        BitSet domainL = synonymsContain(left) ? sideDomain(left, leftSide) : null;
+        BitSet domainR = synonymsContain(right) ? sideDomain(right, rightSide) : null;
+        if (boundL && domainL == null || boundR && domainR == null) return ResultTable.empty();
+        ClauseEvaluator clause = clauseEvaluator(rel);
+        if (boundL && boundR) {
+            if (table.rowCount() > clause.cardinality()) return table.join(relationTable(rel));
+            int[] valL = table.column(colL);
+            int[] valR = table.column(colR);
+            return table.filter(r -> clause.exists(valL[r], valR[r]));
         }
-        for (PatternClause pc : pcs) boundRelPat.add(pc.synonym.toUpperCase());
 
-        List<String> seedWithSyns = new ArrayList<>();
-        for (WithClause w : wcs) {
-            String synL = w.left().split("\\.")[0].toUpperCase();
-            if (!boundRelPat.contains(synL)) seedWithSyns.add(synL);
-            String right = w.right().trim();
-            if (!right.matches("\\d+") && !right.matches("\".*\"")) {
-                String synR = right.contains(".") ? right.split("\\.")[0].toUpperCase() : right.toUpperCase();
-                if (!boundRelPat.contains(synR)) seedWithSyns.add(synR);
-            }
+        String boundCol = boundL ? colL : colR;
+        String other = boundL ? right : left;
+        BitSet keys = new BitSet();
+        for (int code : table.column(boundCol)) {
+            if (code >= 0) keys.set(code);
         }
-        for (String syn : seedWithSyns) {
-            Set<String> dom = domain(getSynType(syn));
-            List<Map<String, String>> expanded = new ArrayList<>();
-            for (Map<String, String> row : tuples) {
-                for (String val : dom) {
-                    Map<String, String> copy = new HashMap<>(row);
-                    copy.put(syn, val);
-                    expanded.add(copy);
-                }
+        keys.and(boundL ? domainL : domainR);
+        boolean fixedOther = !"_".equals(other) && !synonymsContain(other);
+        long perLookup = Math.max(1, clause.cardinality() / Math.max(1, sideSize(boundL ? leftSide : rightSide)));
+        if (fixedOther || keys.cardinality() * perLookup > clause.cardinality()) return table.join(relationTable(rel));
+
+        BitSet otherDomain = boundL ? domainR : domainL;
+        int[] keyColumn = new int[Math.max(16, keys.cardinality())];
+        int[] otherColumn = new int[keyColumn.length];
+        int size = 0;
+        for (int key = keys.nextSetBit(0); key >= 0; key = keys.nextSetBit(key + 1)) {
+            BitSet partners = boundL ? clause.forward(key) : clause.backward(key);
+            if (otherDomain == null) {
+                if (partners.isEmpty()) continue;
+                if (size == keyColumn.length) keyColumn = Arrays.copyOf(keyColumn, size * 2);
+                keyColumn[size++] = key;
+                continue;
             }
-            tuples = expanded;
-        }
-
-        for (WithClause w : wcs) {
-            String left = w.left().trim();
-            String right = w.right().trim();
-            String[] lp = left.split("\\.");
-            String synL = lp[0].toUpperCase();
-            boolean isLiteral = right.matches("\\d+") || right.matches("\".*\"");
-            String literalVal = isLiteral ? right.replaceAll("^\"|\"$", "") : null;
-            boolean isAttrCompare = !isLiteral && (right.contains(".") || synonymsContain(right));
-            String synR = isAttrCompare ? (right.contains(".") ? right.split("\\.")[0].toUpperCase() : right.toUpperCase()) : null;
-            tuples.removeIf(row -> {
-                String valL = row.get(synL);
-                if (valL == null) return true;
-                if (isLiteral) return !valL.equals(literalVal);
-                else if (isAttrCompare) {
-                    String valR = row.get(synR);
-                    return valR == null || !valL.equals(valR);
-                }
-                return true;
-            });
-            if (tuples.isEmpty()) break;
-        }
-
-        Set<String> bound = new HashSet<>();
-        for (Relationship r : relationships) {
-            bound.add(r.getFirstArg().toUpperCase());
-            bound.add(r.getSecondArg().toUpperCase());
-        }
-        for (PatternClause pc : pcs) bound.add(pc.synonym.toUpperCase());
-        for (WithClause w : wcs) {
-            bound.add(w.left().split("\\.")[0].toUpperCase());
-            String[] rp = w.right().split("\\.");
-            if (rp.length >= 1) bound.add(rp[0].toUpperCase());
-        }
-
-        for (Synonym syn : synonyms) {
-            String name = syn.name().toUpperCase();
-            if (bound.contains(name)) continue;
-            Set<String> dom = domain(syn.type());
-            List<Map<String, String>> expanded = new ArrayList<>();
-            for (Map<String, String> row : tuples) {
-                for (String v : dom) {
-                    Map<String, String> copy = new HashMap<>(row);
-                    copy.put(name, v);
-                    expanded.add(copy);
+            for (int partner = partners.nextSetBit(0); partner >= 0; partner = partners.nextSetBit(partner + 1)) {
+                if (!otherDomain.get(partner)) continue;
+                if (size == keyColumn.length) {
+                    keyColumn = Arrays.copyOf(keyColumn, size * 2);
+                    otherColumn = Arrays.copyOf(otherColumn, size * 2);
                 }
+                keyColumn[size] = key;
+                otherColumn[size++] = partner;
             }
-            tuples = expanded;
         }
-        return tuples;
+        String otherCol = other.toUpperCase();
+        ResultTable pairs = otherDomain == null ? ResultTable.of(boundCol, Arrays.copyOf(keyColumn, size))
+                : ResultTable.of(boundCol, Arrays.copyOf(keyColumn, size), otherCol, Arrays.copyOf(otherColumn, size));
+        return table.join(pairs);
     }
 
-    private Set<Pair<String, String>> buildPairsFor(Relationship rel, Set<Synonym> synonyms) {
+    private int sideSize(Side side) {
+        return switch (side) {
+            case STATEMENT -> pkb.getStmtsOfType(EntityType.STMT).length;
+            case PROCEDURE -> pkb.getProcedureIds().length;
+            case VARIABLE -> pkb.getVariableIds().length;
+        };
+    }
+
+    // A synonym that is not selected and occurs nowhere else only asks for some partner to
+    // exist. When it ranges over everything its side can hold it reads as a wildcard, so the
+    // clause is answered from lefts()/rights() instead of listing pairs.
+    private Relationship withoutLoneSynonyms(Relationship rel, Map<String, Integer> occurrences, Set<String> selected) {
         String left = rel.getFirstArg();
         String right = rel.getSecondArg();
-        Map<String, Set<String>> relations = getRawRelation(rel.getType());
+        String newLeft = isLone(left, leftSide(rel), occurrences, selected) ? "_" : left;
+        String newRight = isLone(right, rightSide(rel.getType()), occurrences, selected) ? "_" : right;
+        if (newLeft.equals(left) && newRight.equals(right)) return rel;
+        return new Relationship(rel.getType(), newLeft + ", " + newRight);
+    }
 
-        if ("_".equals(left) && "_".equals(right)) {
-            Set<Pair<String, String>> allPairs = new HashSet<>();
-            for (Map.Entry<String, Set<String>> entry : relations.entrySet()) {
-                for (String value : entry.getValue()) {
-                    allPairs.add(new Pair<>(entry.getKey(), value));
-                }
-            }
-            return allPairs;
-        }
-        Set<String> keys = new HashSet<>(relations.keySet());
-        if (synonymsContain(left, synonyms)) filterByColumnType(left, keys);
-        else if (!"_".equals(left)) keys.retainAll(Set.of(left.replace("\"", "")));
-        relations.keySet().retainAll(keys);
-        for (String k : new HashSet<>(relations.keySet())) {
-            Set<String> vals = new HashSet<>(relations.get(k));
-            if (synonymsContain(right, synonyms)) filterByColumnType(right, vals);
-            else if (!"_".equals(right)) vals.retainAll(Set.of(right.replace("\"", "")));
-            if (vals.isEmpty()) relations.remove(k); else relations.put(k, vals);
+    private boolean isLone(String arg, Side side, Map<String, Integer> occurrences, Set<String> selected) {
+        String syn = arg.toUpperCase();
+        if (!synonymsContain(arg) || selected.contains(syn) || occurrences.get(syn) != 1) return false;
+        SynonymType type = getSynType(arg);
+        return switch (side) {
+            case STATEMENT -> type == SynonymType.STMT || type == SynonymType.PROG_LINE;
+            case PROCEDURE -> type == SynonymType.PROCEDURE;
+            case VARIABLE -> type == SynonymType.VARIABLE;
+        };
+    }
+
+    // Rows of a relationship clause over its synonyms: lookups from a fixed argument, otherwise
+    // the relation's pairs filtered by the synonyms' domains. Values stay entity codes.
+    private ResultTable relationTable(Relationship rel) {
+        String left = rel.getFirstArg();
+        String right = rel.getSecondArg();
+        Side leftSide = leftSide(rel);
+        Side rightSide = rightSide(rel.getType());
+        boolean synL = synonymsContain(left);
+        boolean synR = synonymsContain(right);
+        boolean anyL = "_".equals(left);
+        boolean anyR = "_".equals(right);
+        BitSet domainL = synL ? sideDomain(left, leftSide) : null;
+        BitSet domainR = synR ? sideDomain(right, rightSide) : null;
+        if (synL && domainL == null || synR && domainR == null) return ResultTable.empty();
+        String colL = left.toUpperCase();
+        String colR = right.toUpperCase();
+        ClauseEvaluator clause = clauseEvaluator(rel);
+        if (!synL && !anyL) {
+            int key = literalCode(left, leftSide);
+            if (!synR && !anyR) return truth(clause.exists(key, literalCode(right, rightSide)));
+            return codeTable(colR, clause.forward(key), domainR);
         }
-        Set<Pair<String, String>> pairs = new HashSet<>();
-        for (Map.Entry<String, Set<String>> e : relations.entrySet()) {
-            for (String v : e.getValue()) pairs.add(new Pair<>(e.getKey(), v));
+        if (!synR && !anyR) return codeTable(colL, clause.backward(literalCode(right, rightSide)), domainL);
+        if (anyL && anyR) return truth(clause.anyPair());
+        if (anyR) return codeTable(colL, clause.lefts(), domainL);
+        if (anyL) return codeTable(colR, clause.rights(), domainR);
+
+        int[][] pairs = clause.allPairs();
+        int[] lefts = pairs[0];
+        int[] rights = pairs[1];
+        boolean sameSyn = colL.equals(colR);
+        int[] keptL = new int[lefts.length];
+        int[] keptR = new int[rights.length];
+        int size = 0;
+        for (int i = 0; i < lefts.length; i++) {
+            if (domainL != null && !domainL.get(lefts[i]) || domainR != null && !domainR.get(rights[i])) continue;
+            if (sameSyn && lefts[i] != rights[i]) continue;
+            keptL[size] = lefts[i];
+            keptR[size++] = rights[i];
         }
-        return pairs;
+        if (sameSyn) return ResultTable.of(colL, Arrays.copyOf(keptL, size)).distinct();
+        return ResultTable.of(colL, Arrays.copyOf(keptL, size), colR, Arrays.copyOf(keptR, size));
     }
 
+    // Lookup result for a free argument: a column of the codes in its domain, or for a wildcard
+    // (no domain) just whether there are any.
+    private static ResultTable codeTable(String column, BitSet values, BitSet domain) {
+        if (domain == null) return truth(!values.isEmpty());
+        BitSet kept = (BitSet) values.clone();
+        kept.and(domain);
+        return ResultTable.of(column, kept.stream().toArray());
+    }
 
-    private String attrVal(String raw,String attr){
-        if(attr==null||attr.isEmpty()) return raw;
-        return switch(attr.toLowerCase()){
-            case "value","varname","procname" -> raw.replaceAll("^\"|\"$","");
-            case "stmt#" -> raw;
-            default -> raw;
-        };
+    private static ResultTable truth(boolean holds) {
+        return holds ? ResultTable.unit() : ResultTable.empty();
     }
 
-    private Map<String, Set<String>> getRawRelation(RelationshipType type) {
-        switch (type) {
-            case MODIFIES -> {
-                Map<String, Set<String>> m1 = new HashMap<>();
-                for (Map.Entry<Integer, Set<String>> e : pkb.getModifiedByStmtMap().entrySet())
-                    m1.put(String.valueOf(e.getKey()), new HashSet<>(e.getValue()));
-                for (Map.Entry<String, Set<String>> e : pkb.getModifiedByProcMap().entrySet())
-                    m1.put(e.getKey(), new HashSet<>(e.getValue()));
-                return m1;
-            }
-            case USES -> {
-                Map<String, Set<String>> m2 = new HashMap<>();
-                for (Map.Entry<Integer, Set<String>> e : pkb.getAllUses().entrySet())
-                    m2.put(String.valueOf(e.getKey()), new HashSet<>(e.getValue()));
-                for (Map.Entry<String, Set<String>> e : pkb.getAllUsesProc().entrySet())
-                    m2.put(e.getKey(), new HashSet<>(e.getValue()));
-                return m2;
-            }
-            case CALLS -> {
-                return new HashMap<>(pkb.getCallsMap());
-            }
-            case CALLS_STAR -> {
-                Map<String, Set<String>> calls = new HashMap<>(pkb.getCallsMap());
-                return generateTransitive(calls);
-            }
-            case PARENT, PARENT_STAR -> {
-                Map<String, Set<String>> m3 = new HashMap<>();
-                for (Map.Entry<Integer, Integer> e : pkb.getParentMap().entrySet())
-                    m3.computeIfAbsent(String.valueOf(e.getValue()), k -> new HashSet<>()).add(String.valueOf(e.getKey()));
-                if (type == RelationshipType.PARENT_STAR) m3 = generateTransitive(m3);
-                return m3;
-            }
-            case FOLLOWS, FOLLOWS_STAR -> {
-                Map<String, Set<String>> m4 = new HashMap<>();
-                for (Map.Entry<Integer, Integer> e : pkb.getAllFollows().entrySet())
-                    m4.computeIfAbsent(String.valueOf(e.getKey()), k -> new HashSet<>()).add(String.valueOf(e.getValue()));
-                if (type == RelationshipType.FOLLOWS_STAR) m4 = generateTransitive(m4);
-                return m4;
-            }
-            case NEXT, NEXT_STAR -> {
-                Map<String, Set<String>> m5 = new HashMap<>();
-                for (Map.Entry<Integer, Set<Integer>> e : pkb.getAllNext().entrySet())
-                    m5.put(String.valueOf(e.getKey()), e.getValue().stream().map(String::valueOf).collect(Collectors.toSet()));
-                if (type == RelationshipType.NEXT_STAR) m5 = generateTransitive(m5);
-                return m5;
+    // With a fixed argument one lookup is already cheap; otherwise codes of one synonym are
+    // tried until a single one has a partner.
+    private boolean relationshipHolds(Relationship rel) {
+        String left = rel.getFirstArg();
+        String right = rel.getSecondArg();
+        boolean synL = synonymsContain(left);
+        boolean synR = synonymsContain(right);
+        if (!synL && !synR || !synL && !"_".equals(left) || !synR && !"_".equals(right) || left.equalsIgnoreCase(right)) {
+            return !relationTable(rel).isEmpty();
+        }
+        BitSet domainL = synL ? sideDomain(left, leftSide(rel)) : null;
+        BitSet domainR = synR ? sideDomain(right, rightSide(rel.getType())) : null;
+        if (synL && domainL == null || synR && domainR == null) return false;
+        ClauseEvaluator clause = clauseEvaluator(rel);
+        if (synL) {
+            for (int key = domainL.nextSetBit(0); key >= 0; key = domainL.nextSetBit(key + 1)) {
+                BitSet values = clause.forward(key);
+                if (domainR == null ? !values.isEmpty() : values.intersects(domainR)) return true;
             }
-            case AFFECTS -> {
-                return pkb.getAffectsStringMap();
+            return false;
+        }
+        for (int value = domainR.nextSetBit(0); value >= 0; value = domainR.nextSetBit(value + 1)) {
+            if (!clause.backward(value).isEmpty()) return true;
+        }
+        return false;
+    }
+
+    private enum Side { STATEMENT, PROCEDURE, VARIABLE }
+
+    // Modifies and Uses take a procedure on the left when given a procedure synonym or a name.
+    private Side leftSide(Relationship rel) {
+        return switch (rel.getType()) {
+            case CALLS, CALLS_STAR -> Side.PROCEDURE;
+            case MODIFIES, USES -> {
+                SynonymType type = getSynType(rel.getFirstArg());
+                boolean procedure = type != null ? type == SynonymType.PROCEDURE : rel.getFirstArg().startsWith("\"");
+                yield procedure ? Side.PROCEDURE : Side.STATEMENT;
             }
-            case AFFECTS_STAR -> {
-                Map<String, Set<String>> aff = new HashMap<>(pkb.getAffectsStringMap());
-                return generateTransitive(aff);
+            default -> Side.STATEMENT;
+        };
+    }
+
+    private static Side rightSide(RelationshipType type) {
+        return switch (type) {
+            case CALLS, CALLS_STAR -> Side.PROCEDURE;
+            case MODIFIES, USES -> Side.VARIABLE;
+            default -> Side.STATEMENT;
+        };
+    }
+
+    // Codes a synonym ranges over on one side of a relation (prog_line covers all statements),
+    // or null if its type never occurs there.
+    private BitSet sideDomain(String syn, Side side) {
+        SynonymType type = getSynType(syn);
+        boolean fits = switch (side) {
+            case STATEMENT -> type != SynonymType.PROCEDURE && type != SynonymType.VARIABLE && type != SynonymType.CONSTANT;
+            case PROCEDURE -> type == SynonymType.PROCEDURE;
+            case VARIABLE -> type == SynonymType.VARIABLE;
+        };
+        if (!fits) return null;
+        if (!pkb.isFrozen()) return typeDomain(type);
+        return typeDomains.computeIfAbsent(type, this::typeDomain);
+    }
+
+    private BitSet typeDomain(SynonymType type) {
+        int[] codes = switch (type) {
+            case VARIABLE -> pkb.getVariableIds();
+            case PROCEDURE -> pkb.getProcedureIds();
+            default -> pkb.getStmtsOfType(stmtEntity(type));
+        };
+        BitSet domain = new BitSet();
+        for (int code : codes) domain.set(code);
+        return domain;
+    }
+
+    // Code of a literal argument on one side; 0 or -1 when it names no entity.
+    private int literalCode(String arg, Side side) {
+        String name = arg.replace("\"", "");
+        return switch (side) {
+            case STATEMENT -> ClauseEvaluators.stmtArg(pkb, name);
+            case PROCEDURE -> pkb.getProcedureTable().idOf(name);
+            case VARIABLE -> pkb.getVariableTable().idOf(name);
+        };
+    }
+
+    // Pair count of the relation, divided by the number of entities a fixed argument could be
+    // for one-sided lookups.
+    private long relationshipEstimate(Relationship rel) {
+        String left = rel.getFirstArg();
+        String right = rel.getSecondArg();
+        boolean freeLeft = "_".equals(left) || synonymsContain(left);
+        boolean freeRight = "_".equals(right) || synonymsContain(right);
+        if (!freeLeft && !freeRight || "_".equals(left) && "_".equals(right)) return 1;
+        long pairs = clauseEvaluator(rel).cardinality();
+        if (freeLeft && freeRight) return pairs;
+        String fixed = freeLeft ? right : left;
+        int entities;
+        if (isStmtNumber(fixed)) entities = pkb.getStmtsOfType(EntityType.STMT).length;
+        else if (!freeLeft || rel.getType() == RelationshipType.CALLS || rel.getType() == RelationshipType.CALLS_STAR) entities = pkb.getProcedureIds().length;
+        else entities = pkb.getVariableIds().length;
+        return Math.max(1, pairs / Math.max(1, entities));
+    }
+
+    private Clause patternClause(PatternClause pc) {
+        String syn = pc.synonym.toUpperCase();
+        String varSpec = pc.args.get(0);
+        boolean literal = !varSpec.equals("_") || !pc.args.get(1).equals("_");
+        long estimate = varSpec.startsWith("\"") ? pkb.getAssignsWithLhs(varSpec.replace("\"", "")).size()
+                : domainCodes(syn).length;
+        Supplier<BitSet> matches = once(() -> buildPatternMatches(pc));
+        return new Clause(List.of(syn), literal, estimate, table -> {
+            if (!table.hasColumn(syn)) return table.join(ResultTable.of(syn, matches.get().stream().toArray()));
+            int[] values = table.column(syn);
+            return table.filter(r -> values[r] >= 0 && matches.get().get(values[r]));
+        });
+    }
+
+    // Steps may run once per slice of rows (see holds), so their lookups are computed once.
+    private static <T> Supplier<T> once(Supplier<T> supplier) {
+        List<T> value = new ArrayList<>(1);
+        return () -> {
+            if (value.isEmpty()) value.add(supplier.get());
+            return value.get(0);
+        };
+    }
+
+    private Clause withClause(WithClause w) {
+        String right = w.right().trim();
+        String synL = requireSynonym(w.left().trim().split("\\.")[0].toUpperCase());
+        boolean isLiteral = right.matches("\\d+") || right.matches("\".*\"");
+        if (isLiteral) {
+            String literal = right.replaceAll("^\"|\"$", "");
+            return new Clause(List.of(synL), true, 1, table -> {
+                int code = encode(getSynType(synL), literal);
+                if (table.hasColumn(synL)) {
+                    int[] values = table.column(synL);
+                    return table.filter(r -> values[r] == code);
+                }
+                int[] domain = domainCodes(synL);
+                return table.join(ResultTable.of(synL, domain).filter(r -> domain[r] == code));
+            });
+        }
+        String synR = requireSynonym(right.contains(".") ? right.split("\\.")[0].toUpperCase() : right.toUpperCase());
+        if (synR.equals(synL)) {
+            return new Clause(List.of(synL), false, domainCodes(synL).length,
+                    table -> table.hasColumn(synL) ? table : table.join(domainTable(synL)));
+        }
+        long estimate = Math.min(domainCodes(synL).length, domainCodes(synR).length);
+        return new Clause(List.of(synL, synR), false, estimate, table -> {
+            SynonymType typeL = getSynType(synL);
+            SynonymType typeR = getSynType(synR);
+            boolean sameDictionary = dictionary(typeL) == dictionary(typeR);
+            if (table.hasColumn(synL) && table.hasColumn(synR)) {
+                int[] valL = table.column(synL);
+                int[] valR = table.column(synR);
+                if (sameDictionary) return table.filter(r -> valL[r] == valR[r]);
+                return table.filter(r -> decode(typeL, valL[r]).equals(decode(typeR, valR[r])));
             }
-            default -> {
-                return Collections.emptyMap();
+            if (sameDictionary) {
+                int[] codes = domainCodes(synR);
+                return table.join(ResultTable.of(synL, codes, synR, codes).join(domainTable(synL)));
             }
+            ResultTable pairs = domainTable(synL).cross(domainTable(synR));
+            int[] valL = pairs.column(synL);
+            int[] valR = pairs.column(synR);
+            return table.join(pairs.filter(r -> decode(typeL, valL[r]).equals(decode(typeR, valR[r]))));
+        });
+    }
+
+    private String requireSynonym(String syn) {
+        if (getSynType(syn) == null) throw new IllegalArgumentException("Unknown synonym: " + syn);
+        return syn;
+    }
+
+    private static final Comparator<Clause> CLAUSE_ORDER =
+            Comparator.comparing((Clause clause) -> !clause.literal()).thenComparingLong(Clause::estimate);
+
+    private record Clause(List<String> synonyms, boolean literal, long estimate, UnaryOperator<ResultTable> step,
+                          BooleanSupplier exists) {
+        Clause(List<String> synonyms, boolean literal, long estimate, UnaryOperator<ResultTable> step) {
+            this(synonyms, literal, estimate, step, null);
         }
     }
 
-    private Set<String> domain(SynonymType t) {
-        return switch (t) {
-            case STMT -> pkb.getAllStmts().stream().map(String::valueOf).collect(Collectors.toSet());
-            case ASSIGN -> pkb.getAllStmts().stream().filter(s -> pkb.getEntityType(s) == EntityType.ASSIGN).map(String::valueOf).collect(Collectors.toSet());
-            case WHILE -> pkb.getAllStmts().stream().filter(s -> pkb.getEntityType(s) == EntityType.WHILE).map(String::valueOf).collect(Collectors.toSet());
-            case IF -> pkb.getAllStmts().stream().filter(s -> pkb.getEntityType(s) == EntityType.IF).map(String::valueOf).collect(Collectors.toSet());
-            case CALL -> pkb.getAllStmts().stream().filter(s -> pkb.getEntityType(s) == EntityType.CALL).map(String::valueOf).collect(Collectors.toSet());
-            case PROCEDURE -> new HashSet<>(pkb.getAllProcedures());
-            case VARIABLE -> new HashSet<>(pkb.getAllVariables());
-            case CONSTANT -> new HashSet<>(pkb.getAllConstants());
-            default -> new HashSet<>();
+    private static class ClauseGroup {
+        final Set<String> synonyms = new LinkedHashSet<>();
+        final List<Clause> clauses = new ArrayList<>();
+    }
+
+    private ResultTable domainTable(String syn) {
+        return ResultTable.of(syn, domainCodes(syn));
+    }
+
+    private int[] domainCodes(String syn) {
+        SynonymType type = getSynType(syn);
+        if (type == null) throw new IllegalArgumentException("Unknown synonym: " + syn);
+        return switch (type) {
+            case STMT, ASSIGN, WHILE, IF, CALL -> pkb.getStmtsOfType(stmtEntity(type));
+            case PROCEDURE -> pkb.getProcedureIds();
+            case VARIABLE -> pkb.getVariableIds();
+            case CONSTANT -> pkb.getConstantIds();
+            case PROG_LINE -> new int[0];
+        };
+    }
+
+    // Result columns hold statement numbers for statement synonyms and symbol table ids for
+    // names. Values a dictionary does not know (with literals) get negative codes shared by the
+    // whole query, so equal strings stay equal codes.
+    private int encode(SynonymType type, String value) {
+        SymbolTable table = dictionary(type);
+        int code = table != null ? table.idOf(value) : statementCode(value);
+        if (code >= 0) return code;
+        Integer overflow = overflowCodes.get(value);
+        if (overflow == null) {
+            overflow = -1 - overflowValues.size();
+            overflowValues.add(value);
+            overflowCodes.put(value, overflow);
+        }
+        return overflow;
+    }
+
+    private String decode(SynonymType type, int code) {
+        if (code < 0) return overflowValues.get(-1 - code);
+        SymbolTable table = dictionary(type);
+        return table != null ? table.nameOf(code) : String.valueOf(code);
+    }
+
+    private SymbolTable dictionary(SynonymType type) {
+        return switch (type) {
+            case VARIABLE -> pkb.getVariableTable();
+            case PROCEDURE -> pkb.getProcedureTable();
+            case CONSTANT -> pkb.getConstantTable();
+            default -> null;
+        };
+    }
+
+    private static int statementCode(String value) {
+        if (!isStmtNumber(value) || value.length() > 9) return -1;
+        int stmt = Integer.parseInt(value);
+        return String.valueOf(stmt).equals(value) ? stmt : -1;
+    }
+
+    private ClauseEvaluator clauseEvaluator(Relationship rel) {
+        RelationshipType type = rel.getType();
+        boolean procedures = rightSide(type) == Side.VARIABLE && leftSide(rel) == Side.PROCEDURE;
+        if (!pkb.isFrozen()) return newEvaluator(type, procedures);
+        return (procedures ? procedureEvaluators : clauseEvaluators).computeIfAbsent(type, t -> newEvaluator(t, procedures));
+    }
+
+    private ClauseEvaluator newEvaluator(RelationshipType type, boolean procedures) {
+        return evaluatorWrapper.apply(procedures ? ClauseEvaluators.ofProcedures(type, pkb) : ClauseEvaluators.of(type, pkb));
+    }
+
+    private static boolean isStmtNumber(String arg) {
+        return arg.matches("\\d+");
+    }
+
+    private String attrVal(String raw,String attr){
+        if(attr==null||attr.isEmpty()) return raw;
+        return switch(attr.toLowerCase()){
+            case "value","varname","procname" -> raw.replaceAll("^\"|\"$","");
+            case "stmt#" -> raw;
+            default -> raw;
         };
     }
 
@@ -418,46 +668,16 @@ public class QueryEvaluator {
         };
     }
 
-    private Map<String, Set<String>> generateTransitive(Map<String, Set<String>> relations) {
-        Map<String, Set<String>> result = new HashMap<>();
-        for (Map.Entry<String, Set<String>> entry : relations.entrySet())
-            result.put(entry.getKey(), new HashSet<>(entry.getValue()));
-        boolean changed;
-        do {
-            changed = false;
-            for (String a : new HashSet<>(result.keySet())) {
-                Set<String> direct = result.get(a);
-                Set<String> toAdd = new HashSet<>();
-                for (String b : direct) {
-                    Set<String> next = result.get(b);
-                    if (next != null) {
-                        for (String c : next) if (!direct.contains(c)) {
-                            toAdd.add(c);
-                            changed = true;
-                        }
-                    }
-                }
-                direct.addAll(toAdd);
-            }
-        } while (changed);
-        return result;
-    }
-
     private boolean synonymsContain(String s) {
         for (Synonym syn : synonyms) if (syn.name().equalsIgnoreCase(s)) return true;
         return false;
     }
 
-    private boolean synonymsContain(String s, Set<Synonym> syns) {
-        for (Synonym syn : syns) if (syn.name().equalsIgnoreCase(s)) return true;
-        return false;
-    }
-
     private List<WithClause> parseWithClauses(String query) {
         String[] sections = query.split("(?i)\\bWITH\\b");
         List<WithClause> clauses = new ArrayList<>();
         for (int i = 1; i < sections.length; i++) {
-            String[] parts = sections[i].split("(?i)\\bSUCH\\s+THAT\\b|(?i)\\bAND\\b|(?i)\\bSELECT\\b");
+            String[] parts = sections[i].split("(?i)\\bSUCH\\s+THAT\\b|(?i)\\bPATTERN\\b|(?i)\\bAND\\b|(?i)\\bSELECT\\b");
             for (String part : parts) {
                 String[] eq = part.split("=");
                 if (eq.length == 2) clauses.add(new WithClause(eq[0].trim(), eq[1].trim()));
@@ -542,8 +762,8 @@ public class QueryEvaluator {
         if (subexprCount > 1) throw new IllegalArgumentException();
     }
 
-    private Set<String> buildPatternMatches(PatternClause pc) {
-        Set<String> result = new HashSet<>();
+    private BitSet buildPatternMatches(PatternClause pc) {
+        BitSet result = new BitSet();
         SynonymType t = getSynType(pc.synonym);
         if (t == SynonymType.ASSIGN) {
             String varSpec = pc.args.get(0);
@@ -555,37 +775,20 @@ public class QueryEvaluator {
             String exprInner = subexpr ? exprSpec.substring(2, exprSpec.length() - 2) : exact ? exprSpec.substring(1, exprSpec.length() - 1) : null;
             TNode patternTree = (exact || subexpr) ? ExpressionParser.parse(exprInner) : null;
 
-            for (Integer stmt : pkb.getAllStmts()) {
-                if (pkb.getEntityType(stmt) != EntityType.ASSIGN) continue;
-                TNode rhs = pkb.getAssignRhsTree(stmt);
-                if (!anyVar) {
-                    String lhsVar = varSpec.replaceAll("\"", "");
-                    if (!pkb.getAssignsWithLhs(lhsVar).contains(stmt)) continue;
-                }
-                if (anyExpr) result.add(String.valueOf(stmt));
-                else if (exact && pkb.treesEqual(rhs, patternTree)) result.add(String.valueOf(stmt));
-                else if (subexpr && pkb.containsSubtree(rhs, patternTree)) result.add(String.valueOf(stmt));
-            }
-        } else if (t == SynonymType.WHILE) {
-            String varSpec = pc.args.get(0);
-            for (Integer stmt : pkb.getAllStmts()) {
-                if (pkb.getEntityType(stmt) != EntityType.WHILE) continue;
-                if (varSpec.equals("_")) {
-                    result.add(String.valueOf(stmt));
-                } else {
-                    String v = varSpec.replaceAll("\"", "");
-                    if (pkb.getUsedByStmt(stmt).contains(v)) result.add(String.valueOf(stmt));
-                }
+            BitSet candidates = anyExpr ? new BitSet() : pkb.assignsMatching(patternTree, subexpr);
+            if (anyExpr) for (int stmt : pkb.getStmtsOfType(EntityType.ASSIGN)) candidates.set(stmt);
+            Set<Integer> lhs = anyVar ? null : pkb.getAssignsWithLhs(varSpec.replaceAll("\"", ""));
+            for (int stmt = candidates.nextSetBit(0); stmt >= 0; stmt = candidates.nextSetBit(stmt + 1)) {
+                if (lhs == null || lhs.contains(stmt)) result.set(stmt);
             }
-        } else if (t == SynonymType.IF) {
+        } else if (t == SynonymType.WHILE || t == SynonymType.IF) {
             String varSpec = pc.args.get(0);
-            for (Integer stmt : pkb.getAllStmts()) {
-                if (pkb.getEntityType(stmt) != EntityType.IF) continue;
-                if (varSpec.equals("_")) {
-                    result.add(String.valueOf(stmt));
-                } else {
-                    String v = varSpec.replaceAll("\"", "");
-                    if (pkb.getUsedByStmt(stmt).contains(v)) result.add(String.valueOf(stmt));
+            if (varSpec.equals("_")) {
+                for (int stmt : pkb.getStmtsOfType(stmtEntity(t))) result.set(stmt);
+            } else {
+                String v = varSpec.replaceAll("\"", "");
+                for (int stmt : t == SynonymType.WHILE ? pkb.getWhilesWithControlVar(v) : pkb.getIfsWithControlVar(v)) {
+                    result.set(stmt);
                 }
             }
         }
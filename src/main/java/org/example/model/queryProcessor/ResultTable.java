@@ -0,0 +1,195 @@
+package org.example.model.queryProcessor;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+// Intermediate query result stored column by column: one int[] per synonym holding
+// dictionary-encoded values (statement numbers or symbol table ids). Filters and joins work
+// on row index vectors and gather the columns once at the end. Tables are immutable; column
+// arrays may be shared between tables.
+final class ResultTable {
+    private static final int MAX_ROWS = Integer.MAX_VALUE - 8;
+
+    private final List<String> columns;
+    private final int[][] data;
+    private final int rowCount;
+
+    private ResultTable(List<String> columns, int[][] data, int rowCount) {
+        this.columns = columns;
+        this.data = data;
+        this.rowCount = rowCount;
+    }
+
+    static ResultTable unit() {
+        return new ResultTable(List.of(), new int[0][], 1);
+    }
+
+    static ResultTable empty() {
+        return new ResultTable(List.of(), new int[0][], 0);
+    }
+
+    static ResultTable of(String column, int[] values) {
+        return new ResultTable(List.of(column), new int[][]{values}, values.length);
+    }
+
+    static ResultTable of(String first, int[] firstValues, String second, int[] secondValues) {
+        if (firstValues.length != secondValues.length) throw new IllegalArgumentException("Column lengths differ");
+        return new ResultTable(List.of(first, second), new int[][]{firstValues, secondValues}, firstValues.length);
+    }
+
+    int rowCount() {
+        return rowCount;
+    }
+
+    boolean isEmpty() {
+        return rowCount == 0;
+    }
+
+    List<String> columns() {
+        return columns;
+    }
+
+    boolean hasColumn(String column) {
+        return columns.contains(column);
+    }
+
+    int[] column(String column) {
+        int index = columns.indexOf(column);
+        if (index < 0) throw new IllegalArgumentException("Unknown column: " + column);
+        return data[index];
+    }
+
+    ResultTable select(int[] rows) {
+        int[][] selected = new int[data.length][];
+        for (int c = 0; c < data.length; c++) selected[c] = gather(data[c], rows);
+        return new ResultTable(columns, selected, rows.length);
+    }
+
+    ResultTable filter(IntPredicate row) {
+        int[] kept = new int[rowCount];
+        int size = 0;
+        for (int r = 0; r < rowCount; r++) {
+            if (row.test(r)) kept[size++] = r;
+        }
+        return size == rowCount ? this : select(Arrays.copyOf(kept, size));
+    }
+
+    // Keeps the given columns (in the given order, skipping unknown ones) without duplicate rows.
+    ResultTable project(Collection<String> kept) {
+        List<String> names = new ArrayList<>();
+        List<int[]> values = new ArrayList<>();
+        for (String column : kept) {
+            int index = columns.indexOf(column);
+            if (index < 0 || names.contains(column)) continue;
+            names.add(column);
+            values.add(data[index]);
+        }
+        return new ResultTable(List.copyOf(names), values.toArray(new int[0][]), rowCount).distinct();
+    }
+
+    ResultTable distinct() {
+        if (columns.isEmpty()) return rowCount > 1 ? unit() : this;
+        Set<Object> seen = new HashSet<>();
+        return filter(r -> seen.add(rowKey(r, data)));
+    }
+
+    ResultTable cross(ResultTable other) {
+        int[] left = new int[checkedRows((long) rowCount * other.rowCount)];
+        int[] right = new int[left.length];
+        int i = 0;
+        for (int l = 0; l < rowCount; l++) {
+            for (int r = 0; r < other.rowCount; r++) {
+                left[i] = l;
+                right[i++] = r;
+            }
+        }
+        return combine(other, left, right);
+    }
+
+    // Natural join on the shared columns: a semi-join filter when the other table adds no
+    // columns, a cross product when nothing is shared, otherwise a hash join that indexes the
+    // smaller table through bucket chains and probes it with the larger one.
+    ResultTable join(ResultTable other) {
+        List<String> shared = new ArrayList<>(columns);
+        shared.retainAll(other.columns);
+        if (shared.isEmpty()) return cross(other);
+        int[][] mine = sharedColumns(shared);
+        int[][] theirs = other.sharedColumns(shared);
+        if (columns.containsAll(other.columns)) {
+            Set<Object> keys = new HashSet<>();
+            for (int r = 0; r < other.rowCount; r++) keys.add(rowKey(r, theirs));
+            return filter(r -> keys.contains(rowKey(r, mine)));
+        }
+        boolean buildMine = rowCount <= other.rowCount;
+        int[][] buildKeys = buildMine ? mine : theirs;
+        int[][] probeKeys = buildMine ? theirs : mine;
+        int buildRows = buildMine ? rowCount : other.rowCount;
+        int probeRows = buildMine ? other.rowCount : rowCount;
+
+        Map<Object, Integer> heads = new HashMap<>();
+        int[] next = new int[buildRows];
+        for (int r = buildRows - 1; r >= 0; r--) {
+            Integer head = heads.put(rowKey(r, buildKeys), r);
+            next[r] = head == null ? -1 : head;
+        }
+        int[] buildMatches = new int[Math.max(16, probeRows)];
+        int[] probeMatches = new int[buildMatches.length];
+        int size = 0;
+        for (int p = 0; p < probeRows; p++) {
+            Integer head = heads.get(rowKey(p, probeKeys));
+            if (head == null) continue;
+            for (int b = head; b >= 0; b = next[b]) {
+                if (size == buildMatches.length) {
+                    checkedRows(size + 1L);
+                    int grown = (int) Math.min(2L * size, MAX_ROWS);
+                    buildMatches = Arrays.copyOf(buildMatches, grown);
+                    probeMatches = Arrays.copyOf(probeMatches, grown);
+                }
+                buildMatches[size] = b;
+                probeMatches[size++] = p;
+            }
+        }
+        int[] mineRows = Arrays.copyOf(buildMine ? buildMatches : probeMatches, size);
+        int[] theirRows = Arrays.copyOf(buildMine ? probeMatches : buildMatches, size);
+        return combine(other, mineRows, theirRows);
+    }
+
+    // Row indexes live in int arrays, so a result past the array limit fails here rather than
+    // wrapping around into a negative or too small allocation.
+    private static int checkedRows(long rows) {
+        if (rows > MAX_ROWS) throw new IllegalStateException("Result has more than " + MAX_ROWS + " rows");
+        return (int) rows;
+    }
+
+    private ResultTable combine(ResultTable other, int[] mineRows, int[] theirRows) {
+        List<String> merged = new ArrayList<>(columns);
+        List<int[]> mergedData = new ArrayList<>();
+        for (int[] column : data) mergedData.add(gather(column, mineRows));
+        for (int c = 0; c < other.columns.size(); c++) {
+            if (columns.contains(other.columns.get(c))) continue;
+            merged.add(other.columns.get(c));
+            mergedData.add(gather(other.data[c], theirRows));
+        }
+        return new ResultTable(List.copyOf(merged), mergedData.toArray(new int[0][]), mineRows.length);
+    }
+
+    private int[][] sharedColumns(List<String> shared) {
+        int[][] result = new int[shared.size()][];
+        for (int i = 0; i < shared.size(); i++) result[i] = column(shared.get(i));
+        return result;
+    }
+
+    private static Object rowKey(int row, int[][] keyColumns) {
+        if (keyColumns.length == 1) return keyColumns[0][row];
+        if (keyColumns.length == 2) return ((long) keyColumns[0][row] << 32) | (keyColumns[1][row] & 0xffffffffL);
+        List<Integer> key = new ArrayList<>(keyColumns.length);
+        for (int[] column : keyColumns) key.add(column[row]);
+        return key;
+    }
+
+    private static int[] gather(int[] column, int[] rows) {
+        int[] result = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) result[i] = column[rows[i]];
+        return result;
+    }
+}
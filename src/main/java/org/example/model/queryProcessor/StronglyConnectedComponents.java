@@ -0,0 +1,72 @@
+package org.example.model.queryProcessor;
+
+import java.util.Arrays;
+
+// Iterative Tarjan, so deep call chains or CFGs do not overflow the call stack. Components are
+// numbered in reverse topological order: every edge leads to the same or a lower component.
+final class StronglyConnectedComponents {
+    private StronglyConnectedComponents() {
+    }
+
+    static int[][] members(int[] comp, int compCount) {
+        int[] sizes = new int[compCount];
+        for (int c : comp) sizes[c]++;
+        int[][] members = new int[compCount][];
+        for (int c = 0; c < compCount; c++) members[c] = new int[sizes[c]];
+        int[] fill = new int[compCount];
+        for (int i = 0; i < comp.length; i++) members[comp[i]][fill[comp[i]]++] = i;
+        return members;
+    }
+
+    static int compute(int[][] adj, int[] comp) {
+        int n = adj.length;
+        int[] index = new int[n];
+        int[] low = new int[n];
+        int[] edge = new int[n];
+        boolean[] onStack = new boolean[n];
+        Arrays.fill(index, -1);
+        int[] stack = new int[n];
+        int sp = 0;
+        int[] callStack = new int[n];
+        int csp = 0;
+        int counter = 0;
+        int compCount = 0;
+        for (int root = 0; root < n; root++) {
+            if (index[root] != -1) continue;
+            callStack[csp++] = root;
+            index[root] = low[root] = counter++;
+            stack[sp++] = root;
+            onStack[root] = true;
+            while (csp > 0) {
+                int u = callStack[csp - 1];
+                if (edge[u] < adj[u].length) {
+                    int v = adj[u][edge[u]++];
+                    if (index[v] == -1) {
+                        index[v] = low[v] = counter++;
+                        stack[sp++] = v;
+                        onStack[v] = true;
+                        callStack[csp++] = v;
+                    } else if (onStack[v]) {
+                        low[u] = Math.min(low[u], index[v]);
+                    }
+                    continue;
+                }
+                csp--;
+                if (csp > 0) {
+                    int parent = callStack[csp - 1];
+                    low[parent] = Math.min(low[parent], low[u]);
+                }
+                if (low[u] == index[u]) {
+                    int w;
+                    do {
+                        w = stack[--sp];
+                        onStack[w] = false;
+                        comp[w] = compCount;
+                    } while (w != u);
+                    compCount++;
+                }
+            }
+        }
+        return compCount;
+    }
+}
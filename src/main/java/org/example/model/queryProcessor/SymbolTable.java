@@ -0,0 +1,40 @@
+package org.example.model.queryProcessor;
+
+import java.util.*;
+
+public final class SymbolTable {
+    private final List<String> names = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = names.size();
+            names.add(name);
+            ids.put(name, id);
+        }
+        return id;
+    }
+
+    public int idOf(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public String nameOf(int id) {
+        return names.get(id);
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    public Set<String> namesOf(BitSet idSet) {
+        Set<String> result = new HashSet<>();
+        if (idSet == null) return result;
+        for (int id = idSet.nextSetBit(0); id >= 0; id = idSet.nextSetBit(id + 1)) {
+            result.add(names.get(id));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,145 @@
+package org.example.model.queryProcessor;
+
+import java.util.*;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+
+final class TransitiveClosure {
+    private final long[][] forward;
+    private final int[] forwardBase;
+    private final long[][] backward;
+    private final int[] backwardBase;
+    private final long pairCount;
+
+    private TransitiveClosure(long[][] forward, int[] forwardBase, long[][] backward, int[] backwardBase) {
+        this.forward = forward;
+        this.forwardBase = forwardBase;
+        this.backward = backward;
+        this.backwardBase = backwardBase;
+        long pairs = 0;
+        for (long[] row : forward) {
+            if (row == null) continue;
+            for (long word : row) pairs += Long.bitCount(word);
+        }
+        pairCount = pairs;
+    }
+
+    static TransitiveClosure fromPackedRows(long[][] forward, int[] forwardBase, long[][] backward, int[] backwardBase) {
+        return new TransitiveClosure(forward, forwardBase, backward, backwardBase);
+    }
+
+    static TransitiveClosure fromRows(BitSet[] rows) {
+        int size = rows.length;
+        long[][] forward = new long[size][];
+        int[] forwardBase = new int[size];
+        BitSet[] columns = new BitSet[size];
+        for (int a = 0; a < size; a++) {
+            BitSet row = rows[a];
+            if (row == null || row.isEmpty()) continue;
+            pack(row, a, forward, forwardBase);
+            for (int b = row.nextSetBit(0); b >= 0; b = row.nextSetBit(b + 1)) {
+                if (b >= size) throw new IllegalArgumentException("Successor out of range: " + b);
+                if (columns[b] == null) columns[b] = new BitSet();
+                columns[b].set(a);
+            }
+        }
+        long[][] backward = new long[size][];
+        int[] backwardBase = new int[size];
+        for (int b = 0; b < size; b++) {
+            if (columns[b] != null) pack(columns[b], b, backward, backwardBase);
+        }
+        return new TransitiveClosure(forward, forwardBase, backward, backwardBase);
+    }
+
+    static TransitiveClosure compute(int size, IntFunction<BitSet> successors) {
+        BitSet[] rows = new BitSet[size];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int start = 0; start < size; start++) {
+            BitSet direct = successors.apply(start);
+            if (direct == null || direct.isEmpty()) continue;
+            BitSet reached = new BitSet();
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                BitSet next = successors.apply(queue.poll());
+                if (next == null) continue;
+                for (int n = next.nextSetBit(0); n >= 0; n = next.nextSetBit(n + 1)) {
+                    if (!reached.get(n)) {
+                        reached.set(n);
+                        queue.add(n);
+                    }
+                }
+            }
+            rows[start] = reached;
+        }
+        return fromRows(rows);
+    }
+
+    private static void pack(BitSet row, int index, long[][] rows, int[] bases) {
+        long[] words = row.toLongArray();
+        int first = row.nextSetBit(0) >>> 6;
+        rows[index] = first == 0 ? words : Arrays.copyOfRange(words, first, words.length);
+        bases[index] = first;
+    }
+
+    private static boolean test(long[][] rows, int[] bases, int a, int b) {
+        if (a < 0 || a >= rows.length || b < 0 || rows[a] == null) return false;
+        int word = (b >>> 6) - bases[a];
+        return word >= 0 && word < rows[a].length && (rows[a][word] & (1L << b)) != 0;
+    }
+
+    private static BitSet unpack(long[][] rows, int[] bases, int a) {
+        BitSet result = new BitSet();
+        if (a < 0 || a >= rows.length || rows[a] == null) return result;
+        long[] words = rows[a];
+        int base = bases[a] << 6;
+        for (int w = 0; w < words.length; w++) {
+            long bits = words[w];
+            while (bits != 0) {
+                result.set(base + (w << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        return result;
+    }
+
+    boolean contains(int a, int b) {
+        return test(forward, forwardBase, a, b);
+    }
+
+    BitSet successors(int a) {
+        return unpack(forward, forwardBase, a);
+    }
+
+    BitSet predecessors(int b) {
+        return unpack(backward, backwardBase, b);
+    }
+
+    void forEachSuccessor(int a, IntConsumer action) {
+        if (a < 0 || a >= forward.length || forward[a] == null) return;
+        long[] words = forward[a];
+        int base = forwardBase[a] << 6;
+        for (int w = 0; w < words.length; w++) {
+            long bits = words[w];
+            while (bits != 0) {
+                action.accept(base + (w << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    boolean hasSuccessors(int a) {
+        return a >= 0 && a < forward.length && forward[a] != null;
+    }
+
+    boolean hasPredecessors(int b) {
+        return b >= 0 && b < backward.length && backward[b] != null;
+    }
+
+    int size() {
+        return forward.length;
+    }
+
+    long pairCount() {
+        return pairCount;
+    }
+}
@@ -0,0 +1,167 @@
+package org.example.model;
+
+import org.example.model.ast.ExpressionParser;
+import org.example.model.queryProcessor.DesignExtractor;
+import org.example.model.queryProcessor.PKB;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DesignExtractorTest {
+
+    private static final String PROGRAM = """
+            procedure main {
+              x = 1;
+              while x {
+                y = x + 2;
+                if y then {
+                  x = y;
+                } else {
+                  z = 3;
+                  call foo;
+                }
+              }
+              z = x + z;
+            }
+            procedure foo {
+              z = z * 2;
+            }
+            """;
+
+    private PKB pkb;
+
+    @BeforeEach
+    void setUp() {
+        pkb = extract(false);
+    }
+
+    private static PKB extract(boolean lazy) {
+        Parser parser = new Parser(new Lexer(PROGRAM).convertToTokens());
+        PKB result = new PKB();
+        result.setLazyNextStar(lazy);
+        result.setLazyAffects(lazy);
+        new DesignExtractor(result).extract(parser.parseProgram());
+        return result;
+    }
+
+    @Test
+    void testParentStarUsesSubtreeIntervals() {
+        assertTrue(pkb.isParentStar(2, 3));
+        assertTrue(pkb.isParentStar(2, 7));
+        assertTrue(pkb.isParentStar(4, 6));
+        assertFalse(pkb.isParentStar(4, 3));
+        assertFalse(pkb.isParentStar(2, 8));
+        assertFalse(pkb.isParentStar(2, 2));
+        assertEquals(Set.of(3, 4, 5, 6, 7), pkb.getDescendants(2));
+        assertEquals(Set.of(), pkb.getDescendants(3));
+        assertEquals(Set.of(4, 2), pkb.getAncestors(6));
+    }
+
+    @Test
+    void testFollowsStarUsesStmtListPositions() {
+        assertTrue(pkb.isFollowsStar(1, 2));
+        assertTrue(pkb.isFollowsStar(1, 8));
+        assertTrue(pkb.isFollowsStar(6, 7));
+        assertFalse(pkb.isFollowsStar(8, 1));
+        assertFalse(pkb.isFollowsStar(3, 5));
+        assertFalse(pkb.isFollowsStar(5, 6));
+        assertArrayEquals(new int[]{2, 8}, pkb.getFollowersStar(1));
+        assertArrayEquals(new int[]{1, 2}, pkb.getPredecessorsStar(8));
+        assertArrayEquals(new int[0], pkb.getFollowersStar(9));
+    }
+
+    @Test
+    void testLazyNextStarMatchesPrecomputedClosure() {
+        PKB lazy = extract(true);
+        for (int from = 1; from <= 9; from++) {
+            for (int to = 1; to <= 9; to++) {
+                assertEquals(pkb.isNextStar(from, to), lazy.isNextStar(from, to), "Next*(" + from + ", " + to + ")");
+            }
+        }
+        assertTrue(lazy.isNextStar(5, 8));
+        assertTrue(lazy.isNextStar(3, 3));
+        assertFalse(lazy.isNextStar(1, 1));
+        assertFalse(lazy.isNextStar(8, 2));
+        assertEquals(Set.of(2, 3, 4, 5, 6, 7, 8), lazy.getNextStar(1));
+        assertEquals(Set.of(1, 2, 3, 4, 5, 6, 7), lazy.getPrevStar(2));
+        assertEquals(Set.of(), lazy.getNextStar(9));
+    }
+
+    @Test
+    void testLazyAffectsMatchesExtractedAffects() {
+        PKB lazy = extract(true);
+        assertEquals(Set.of(3, 8), lazy.getAffected(1));
+        assertEquals(Set.of(1, 5), lazy.getAffecting(8));
+        assertFalse(lazy.isAffects(6, 8));
+        assertTrue(lazy.isAffectsStar(1, 5));
+        for (int stmt = 1; stmt <= 9; stmt++) {
+            assertEquals(pkb.getAffected(stmt), lazy.getAffected(stmt), "Affects(" + stmt + ", _)");
+            assertEquals(pkb.getAffecting(stmt), lazy.getAffecting(stmt), "Affects(_, " + stmt + ")");
+            assertEquals(pkb.getAffectedStar(stmt), lazy.getAffectedStar(stmt), "Affects*(" + stmt + ", _)");
+        }
+    }
+
+    @Test
+    void testExtractFreezesPkbWithReadOnlyViews() {
+        assertTrue(pkb.isFrozen());
+        assertEquals(Set.of("x", "y", "z"), pkb.getAllVariables());
+        assertEquals(Set.of("z"), pkb.getAllUses().get(7));
+        assertFalse(pkb.getAllUses().containsKey(1));
+        assertEquals(Set.of("x", "y", "z"), pkb.getModifiedByProcMap().get("main"));
+        assertEquals(Set.of("z"), pkb.getUsedByStmt(7));
+        assertTrue(pkb.getUsedByStmt(2).contains("z"));
+        assertThrows(UnsupportedOperationException.class, () -> pkb.getAllProcedures().add("bar"));
+        assertThrows(UnsupportedOperationException.class, () -> pkb.getAllUses().get(7).remove("z"));
+        assertThrows(UnsupportedOperationException.class, () -> pkb.getNext(1).clear());
+        assertThrows(IllegalStateException.class, () -> pkb.addVariable("w"));
+    }
+
+    @Test
+    void testProcedureRangesCoverContiguousStatements() {
+        assertArrayEquals(new int[]{1, 8}, pkb.getProcedureRange("main"));
+        assertArrayEquals(new int[]{9, 9}, pkb.getProcedureRange("foo"));
+        assertNull(pkb.getProcedureRange("bar"));
+        assertEquals("main", pkb.getProcedureOfStmt(1));
+        assertEquals("main", pkb.getProcedureOfStmt(8));
+        assertEquals("foo", pkb.getProcedureOfStmt(9));
+        assertNull(pkb.getProcedureOfStmt(10));
+    }
+
+    @Test
+    void testReverseIndexesMirrorForwardRelations() {
+        assertEquals(Set.of(1, 2, 4, 5), pkb.getStmtsModifying("x"));
+        assertEquals(Set.of("main", "foo"), pkb.getProceduresModifying("z"));
+        assertEquals(Set.of(2, 4, 7, 8, 9), pkb.getStmtsUsing("z"));
+        assertEquals(Set.of("main", "foo"), pkb.getProceduresUsing("z"));
+        assertEquals(Set.of("main"), pkb.getCallers("foo"));
+        assertEquals(Set.of(), pkb.getCallers("main"));
+        assertEquals(Set.of(), pkb.getStmtsModifying("unknown"));
+    }
+
+    @Test
+    void testPatternIndexFindsExactAndSubexpressionMatches() {
+        assertEquals(Set.of(3), pkb.getAssignsMatching(ExpressionParser.parse("x + 2"), false));
+        assertEquals(Set.of(3), pkb.getAssignsMatching(ExpressionParser.parse("(x) + (2)"), true));
+        assertEquals(Set.of(3, 8), pkb.getAssignsMatching(ExpressionParser.parse("x"), true));
+        assertEquals(Set.of(3, 9), pkb.getAssignsMatching(ExpressionParser.parse("2"), true));
+        assertEquals(Set.of(5), pkb.getAssignsMatching(ExpressionParser.parse("y"), false));
+        assertEquals(Set.of(), pkb.getAssignsMatching(ExpressionParser.parse("z + x"), true));
+        assertEquals(Set.of(), pkb.getAssignsMatching(ExpressionParser.parse("x"), false));
+        assertTrue(pkb.treesEqual(ExpressionParser.parse("x + 2"), pkb.getAssignRhsTree(3)));
+        assertTrue(pkb.treesEqual(ExpressionParser.parse("z * 2"), pkb.getAssignRhsTree(9)));
+        assertNull(pkb.getAssignRhsTree(2));
+    }
+
+    @Test
+    void testControlVariableIndexesCoverOnlyConditions() {
+        assertEquals(Set.of(2), pkb.getWhilesWithControlVar("x"));
+        assertEquals(Set.of(), pkb.getWhilesWithControlVar("y"));
+        assertEquals(Set.of(4), pkb.getIfsWithControlVar("y"));
+        assertEquals(Set.of(), pkb.getIfsWithControlVar("x"));
+        assertTrue(pkb.getUsedByStmt(4).contains("z"));
+        assertEquals(Set.of(), pkb.getIfsWithControlVar("z"));
+    }
+}
@@ -0,0 +1,38 @@
+package org.example.model.queryProcessor;
+
+import org.example.model.Lexer;
+import org.example.model.Parser;
+import org.example.model.ast.ExpressionParser;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PatternIndexTest {
+
+    private static final int ASSIGNS = 20000;
+    private static final int OPERATORS_PER_ASSIGN = 3;
+
+    private static PKB extract(String program) {
+        PKB pkb = new PKB();
+        new DesignExtractor(pkb).extract(new Parser(new Lexer(program).convertToTokens()).parseProgram());
+        return pkb;
+    }
+
+    @Test
+    void testIndexGrowsWithOperatorsOnly() {
+        StringBuilder program = new StringBuilder("procedure main {\n");
+        for (int i = 0; i < ASSIGNS; i++) {
+            program.append("v").append(i % 500).append(" = v").append((i + 1) % 500)
+                    .append(" + v").append((i + 2) % 500).append(" * ").append(i % 4)
+                    .append(" - v").append((i + 3) % 500).append(";\n");
+        }
+        PKB pkb = extract(program.append("}\n").toString());
+
+        // One whole-RHS posting per assignment and one per operator; names are not indexed.
+        assertEquals((long) ASSIGNS * (1 + OPERATORS_PER_ASSIGN), pkb.patternIndexSize());
+
+        assertEquals(ASSIGNS / 500, pkb.getAssignsMatching(ExpressionParser.parse("v1 + v2 * 0"), true).size());
+        assertEquals(ASSIGNS * 3 / 500, pkb.getAssignsMatching(ExpressionParser.parse("v7"), true).size());
+        assertTrue(pkb.getAssignsMatching(ExpressionParser.parse("v1 + v2"), true).isEmpty());
+    }
+}
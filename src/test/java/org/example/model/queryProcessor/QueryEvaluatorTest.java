@@ -0,0 +1,183 @@
+package org.example.model.queryProcessor;
+
+import org.example.model.Lexer;
+import org.example.model.Parser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryEvaluatorTest {
+
+    private static final String PROGRAM = """
+            procedure main {
+              x = 1;
+              while x {
+                y = x + 2;
+                if y then {
+                  x = y;
+                } else {
+                  z = 3;
+                  call foo;
+                }
+              }
+              z = x + z;
+            }
+            procedure foo {
+              z = z * 2;
+            }
+            """;
+
+    private PKB pkb;
+    private QueryEvaluator evaluator;
+    private int allPairsCalls;
+    private int lookups;
+    private final List<String> calls = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Parser parser = new Parser(new Lexer(PROGRAM).convertToTokens());
+        pkb = new PKB();
+        new DesignExtractor(pkb).extract(parser.parseProgram());
+        evaluator = new QueryEvaluator(pkb, CountingEvaluator::new);
+        allPairsCalls = 0;
+        lookups = 0;
+        calls.clear();
+    }
+
+    private Set<String> evaluate(String query) {
+        String result = evaluator.evaluateQuery(query);
+        return result.equals("none") ? Set.of() : new TreeSet<>(Arrays.asList(result.split(", ")));
+    }
+
+    @Test
+    void testBoundSynonymJoinsThroughLookups() {
+        assertEquals(Set.of("2", "3", "4", "5", "6", "7", "8"),
+                evaluate("stmt s1, s2; Select s2 such that Next*(s1, s2) with s1.stmt# = 6"));
+        assertEquals(0, allPairsCalls);
+        assertTrue(lookups > 0);
+
+        assertEquals(Set.of("2", "8"), evaluate("stmt s1, s2; Select s2 such that Follows*(s1, s2) with s1.stmt# = 1"));
+        assertEquals(Set.of("1", "2"), evaluate("stmt s1, s2; Select s1 such that Follows*(s1, s2) with s2.stmt# = 8"));
+        assertEquals(0, allPairsCalls);
+    }
+
+    @Test
+    void testWithClauseFollowedByPattern() {
+        assertEquals(Set.of("4"), evaluate("while w; if ifs; Select ifs with w.stmt# = 2 pattern ifs(\"y\", _, _)"));
+        assertEquals("false", evaluator.evaluateQuery("while w; if ifs; Select BOOLEAN with w.stmt# = 3 pattern ifs(_, _, _)"));
+    }
+
+    @Test
+    void testUnboundRelationshipListsPairs() {
+        assertEquals(Set.of("2 3", "2 8", "4 5", "4 6", "6 7", "7 2", "1 2", "3 4", "5 2"),
+                evaluate("stmt s1, s2; Select <s1, s2> such that Next(s1, s2)"));
+        assertEquals(1, allPairsCalls);
+    }
+
+    @Test
+    void testUnselectedGroupStopsAtFirstSurvivingRow() {
+        // Next(s2, s3) has 9 pairs; (2, 3) is the first whose reverse is in Next*.
+        assertEquals("true", evaluator.evaluateQuery("stmt s2, s3; Select BOOLEAN such that Next(s2, s3) and Next*(s3, s2)"));
+        assertEquals(1, allPairsCalls);
+        assertTrue(lookups < 9);
+
+        assertEquals(Set.of("1", "2", "3", "4", "5", "6", "7", "8", "9"),
+                evaluate("stmt s1, s2, s3; Select s1 such that Next(s2, s3) and Next*(s3, s2)"));
+        assertEquals("false", evaluator.evaluateQuery("stmt s2, s3; Select BOOLEAN such that Next(s2, s3) and Follows*(s3, s2)"));
+        assertEquals(Set.of(), evaluate("stmt s1, s2, s3; Select s1 such that Next(s2, s3) and Follows*(s3, s2)"));
+    }
+
+    @Test
+    void testIndependentGroupsAreEvaluatedSeparately() {
+        // Follows(a2, s2) shares nothing with the selected group, so one partner is enough.
+        assertEquals(Set.of("2", "4"), evaluate("stmt s1, s2; assign a1, a2; Select s1 such that Parent(s1, a1) and Follows(a2, s2)"));
+        assertEquals(List.of("Follows.forward"), calls.stream().filter(c -> c.startsWith("Follows.")).toList());
+
+        assertEquals(Set.of("2 3", "2 8", "4 5", "4 6", "6 7", "7 2", "1 2", "3 4", "5 2"),
+                evaluate("stmt s1, s2; assign a; while w; Select <s1, s2> such that Next(s1, s2) and Parent(w, a)"));
+    }
+
+    @Test
+    void testEmptyBooleanGroupSkipsRemainingGroups() {
+        assertEquals("false", evaluator.evaluateQuery("stmt s; assign a1, a2; Select BOOLEAN such that Next*(a1, a2) and Follows(8, s)"));
+        assertTrue(calls.stream().noneMatch(c -> c.startsWith("NextStar.")));
+        assertEquals(Set.of(), evaluate("stmt s; assign a1, a2; Select a1 such that Next*(a1, a2) and Follows(8, s)"));
+        assertTrue(calls.stream().noneMatch(c -> c.startsWith("NextStar.")));
+    }
+
+    @Test
+    void testClausesRunInEstimateOrder() {
+        // Follows has 4 pairs and Parent* 8, so Follows runs first and binds s for Parent*.
+        assertEquals(Set.of("4", "7"), evaluate("stmt s; assign a; while w; Select s such that Parent*(w, s) and Follows(a, s)"));
+        assertEquals("Follows.allPairs", calls.get(0));
+        assertEquals(Set.of("ParentStar.backward"), new HashSet<>(calls.subList(1, calls.size())));
+
+        calls.clear();
+        assertEquals(Set.of("4", "7"), evaluate("stmt s; assign a; while w; Select s such that Follows(a, s) and Parent*(w, s)"));
+        assertEquals("Follows.allPairs", calls.get(0));
+    }
+
+    private final class CountingEvaluator implements ClauseEvaluator {
+        private final ClauseEvaluator delegate;
+        private final String name;
+
+        CountingEvaluator(ClauseEvaluator delegate) {
+            this.delegate = delegate;
+            this.name = delegate.getClass().getSimpleName();
+        }
+
+        @Override
+        public boolean exists(int left, int right) {
+            lookups++;
+            calls.add(name + ".exists");
+            return delegate.exists(left, right);
+        }
+
+        @Override
+        public BitSet forward(int left) {
+            lookups++;
+            calls.add(name + ".forward");
+            return delegate.forward(left);
+        }
+
+        @Override
+        public BitSet backward(int right) {
+            lookups++;
+            calls.add(name + ".backward");
+            return delegate.backward(right);
+        }
+
+        @Override
+        public int[][] allPairs() {
+            allPairsCalls++;
+            calls.add(name + ".allPairs");
+            return delegate.allPairs();
+        }
+
+        @Override
+        public BitSet lefts() {
+            calls.add(name + ".lefts");
+            return delegate.lefts();
+        }
+
+        @Override
+        public BitSet rights() {
+            calls.add(name + ".rights");
+            return delegate.rights();
+        }
+
+        @Override
+        public boolean anyPair() {
+            calls.add(name + ".anyPair");
+            return delegate.anyPair();
+        }
+
+        @Override
+        public long cardinality() {
+            return delegate.cardinality();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.model.queryProcessor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultTableTest {
+
+    private static List<String> rows(ResultTable table, String... columns) {
+        List<String> rows = new ArrayList<>();
+        for (int r = 0; r < table.rowCount(); r++) {
+            StringJoiner row = new StringJoiner(" ");
+            for (String column : columns) row.add(String.valueOf(table.column(column)[r]));
+            rows.add(row.toString());
+        }
+        Collections.sort(rows);
+        return rows;
+    }
+
+    @Test
+    void testUnitAndEmptyTables() {
+        ResultTable a = ResultTable.of("A", new int[]{1, 2});
+        assertEquals(1, ResultTable.unit().rowCount());
+        assertTrue(ResultTable.unit().columns().isEmpty());
+        assertTrue(ResultTable.empty().isEmpty());
+        assertEquals(List.of("1", "2"), rows(ResultTable.unit().join(a), "A"));
+        assertEquals(List.of("1", "2"), rows(a.cross(ResultTable.unit()), "A"));
+        assertTrue(ResultTable.empty().join(a).isEmpty());
+        assertTrue(a.join(ResultTable.empty()).isEmpty());
+        assertTrue(a.join(ResultTable.of("A", new int[0])).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> ResultTable.of("A", new int[1], "B", new int[2]));
+        assertThrows(IllegalArgumentException.class, () -> a.column("B"));
+    }
+
+    @Test
+    void testCrossWithoutSharedColumns() {
+        ResultTable joined = ResultTable.of("A", new int[]{1, 2}).join(ResultTable.of("B", new int[]{7, 8, 9}));
+        assertEquals(List.of("A", "B"), joined.columns());
+        assertEquals(List.of("1 7", "1 8", "1 9", "2 7", "2 8", "2 9"), rows(joined, "A", "B"));
+    }
+
+    @Test
+    void testSemiJoinKeepsColumnsAndFiltersRows() {
+        ResultTable table = ResultTable.of("A", new int[]{1, 2, 3, 2}, "B", new int[]{5, 6, 7, 8});
+        ResultTable joined = table.join(ResultTable.of("A", new int[]{2, 3, 3}));
+        assertEquals(List.of("A", "B"), joined.columns());
+        assertEquals(List.of("2 6", "2 8", "3 7"), rows(joined, "A", "B"));
+        assertSame(table, table.join(ResultTable.of("B", new int[]{5, 6, 7, 8})));
+    }
+
+    @Test
+    void testHashJoinFollowsDuplicateKeyChains() {
+        ResultTable left = ResultTable.of("A", new int[]{1, 1, 2, 3}, "B", new int[]{10, 11, 12, 13});
+        ResultTable right = ResultTable.of("A", new int[]{1, 1, 1, 2, 4}, "C", new int[]{20, 21, 22, 23, 24});
+        List<String> expected = List.of("1 10 20", "1 10 21", "1 10 22", "1 11 20", "1 11 21", "1 11 22", "2 12 23");
+        assertEquals(expected, rows(left.join(right), "A", "B", "C"));
+        // Building on either side gives the same rows and keeps the receiver's columns first.
+        assertEquals(expected, rows(right.join(left), "A", "B", "C"));
+        assertEquals(List.of("A", "B", "C"), left.join(right).columns());
+        assertEquals(List.of("A", "C", "B"), right.join(left).columns());
+    }
+
+    @Test
+    void testJoinKeysOfOneTwoAndThreeColumns() {
+        ResultTable one = ResultTable.of("A", new int[]{1, 2}, "X", new int[]{0, 1});
+        assertEquals(List.of("2 1 9"), rows(one.join(ResultTable.of("A", new int[]{2}, "Y", new int[]{9})), "A", "X", "Y"));
+
+        // Negative codes (overflow values) must not collide when two keys are packed together.
+        ResultTable two = ResultTable.of("A", new int[]{1, -1, 1}, "B", new int[]{-1, 1, 1});
+        ResultTable other = ResultTable.of("A", new int[]{-1, 1}, "B", new int[]{1, -1}).cross(ResultTable.of("C", new int[]{5}));
+        assertEquals(List.of("-1 1 5", "1 -1 5"), rows(two.join(other), "A", "B", "C"));
+
+        ResultTable three = ResultTable.of("A", new int[]{1, 1}, "B", new int[]{2, 2}).cross(ResultTable.of("C", new int[]{3}))
+                .join(ResultTable.of("D", new int[]{4, 5}));
+        ResultTable keys = ResultTable.of("A", new int[]{1, 1}, "B", new int[]{2, 3}).cross(ResultTable.of("C", new int[]{3}))
+                .cross(ResultTable.of("E", new int[]{6}));
+        assertEquals(List.of("1 2 3 4 6", "1 2 3 4 6", "1 2 3 5 6", "1 2 3 5 6"), rows(three.join(keys), "A", "B", "C", "D", "E"));
+    }
+
+    @Test
+    void testProjectAndDistinct() {
+        ResultTable table = ResultTable.of("A", new int[]{1, 1, 2, 1}, "B", new int[]{5, 6, 5, 5});
+        assertEquals(List.of("1 5", "1 6", "2 5"), rows(table.distinct(), "A", "B"));
+        ResultTable projected = table.project(List.of("B", "Z", "A", "B"));
+        assertEquals(List.of("B", "A"), projected.columns());
+        assertEquals(3, projected.rowCount());
+        assertEquals(List.of("1", "2"), rows(table.project(List.of("A")), "A"));
+
+        ResultTable none = table.project(List.of());
+        assertTrue(none.columns().isEmpty());
+        assertEquals(1, none.rowCount());
+        assertTrue(ResultTable.of("A", new int[0]).project(List.of()).isEmpty());
+    }
+
+    @Test
+    void testFilterAndSelect() {
+        ResultTable table = ResultTable.of("A", new int[]{4, 5, 6});
+        assertSame(table, table.filter(r -> true));
+        assertEquals(List.of("4", "6"), rows(table.filter(r -> r != 1), "A"));
+        assertArrayEquals(new int[]{6, 4}, table.select(new int[]{2, 0}).column("A"));
+    }
+
+    @Test
+    void testCrossRejectsResultsPastTheArrayLimit() {
+        ResultTable a = ResultTable.of("A", new int[50_000]);
+        ResultTable b = ResultTable.of("B", new int[50_000]);
+        assertThrows(IllegalStateException.class, () -> a.cross(b));
+    }
+}